@@ -0,0 +1,110 @@
+package cscore;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures <code>Query</code> with different select, order, filter and group options over a synthetic viewing log
+ * exported to several files. The rows are printed to a stream that discards them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"100000"})
+    public int rows;
+
+    @Param({"JSON", "SEGMENT", "COMPRESSED_SEGMENT"})
+    public Records.ExportFormat format;
+
+    @Param({
+            "-s STB,TITLE",
+            "-s STB,REV -o REV,STB",
+            "-s STB,REV -o REV -l 10",
+            "-s TITLE,REV -f DATE=2014-03-01..2014-03-31",
+            "-s TITLE -f STB=stb7",
+            "-s PROVIDER,REV:sum,STB:count -g PROVIDER -o PROVIDER"
+    })
+    public String options;
+
+    private File directory;
+    private List<String> files;
+    private String[] args;
+    private final PrintStream discard = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        directory = Files.createTempDirectory("query-bench").toFile();
+        String[] lines = new ViewingLogGenerator(1000, 0.1, 42).generate(rows);
+        Records records = new Records();
+        records.setMaxRecords(Math.max(1, rows / 8));
+        records.setExportFormat(format);
+        records.enableSecondaryIndexes();
+        records.setJsonName(new File(directory, "export").getPath());
+        for (String line : lines) {
+            records.importRecord(new Record(line));
+        }
+        records.export(new File(directory, "exportLast").getPath());
+
+        files = new ArrayList<>();
+        for (File file : directory.listFiles()) {
+            if (!file.getName().contains(".")) {
+                files.add(file.getPath());
+            }
+        }
+        files.sort(null);
+        args = QueryServer.tokenize(options);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public Query query() throws Exception {
+        Query query = new Query() {
+            @Override
+            protected List<String> dataFiles() {
+                return files;
+            }
+        };
+        query.out = discard;
+        query.optionsParse(args);
+        query.importRecords();
+        return query;
+    }
+}
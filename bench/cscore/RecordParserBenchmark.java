@@ -0,0 +1,63 @@
+package cscore;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares <code>RecordParser</code> against the split/DateTimeFormatter/Double.valueOf parsing that
+ * <code>Record(String)</code> used to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordParserBenchmark {
+    private String[] lines;
+    private int next;
+
+    @Setup
+    public void setup() {
+        lines = new String[1024];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "stb" + (i % 97) + "|title " + (i % 31) + "|provider " + (i % 7) + "|2014-04-"
+                    + String.format("%02d", i % 28 + 1) + "|" + (i % 20) + "." + String.format("%02d", i % 100)
+                    + "|" + (i % 24) + ":" + String.format("%02d", i % 60);
+        }
+    }
+
+    private String nextLine() {
+        next = (next + 1) & (lines.length - 1);
+        return lines[next];
+    }
+
+    @Benchmark
+    public void legacySplitParser(Blackhole blackhole) {
+        String[] list = nextLine().split("\\|");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd k:mm");
+        blackhole.consume(list[0].toCharArray());
+        blackhole.consume(list[1].toCharArray());
+        blackhole.consume(list[2].toCharArray());
+        blackhole.consume(LocalDateTime.parse(list[3] + " " + list[5], formatter));
+        blackhole.consume(Double.valueOf(list[4]));
+    }
+
+    @Benchmark
+    public Record recordParser() throws Exception {
+        return RecordParser.get().parse(nextLine());
+    }
+}
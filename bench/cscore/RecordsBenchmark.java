@@ -0,0 +1,147 @@
+package cscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures parsing, adding, importing and exporting a synthetic viewing log, see <code>ViewingLogGenerator</code>.
+ * Sample time mode reports the percentiles of each call, run with -prof gc for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordsBenchmark {
+    @Param({"10000"})
+    public int rows;
+
+    @Param({"0.0", "0.2"})
+    public double duplicateRatio;
+
+    @Param({"1000"})
+    public int cardinality;
+
+    private String[] lines;
+    private Record[] records;
+    private File directory;
+    private String logFile;
+    private int export;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ViewingLogGenerator generator = new ViewingLogGenerator(cardinality, duplicateRatio, 42);
+        lines = generator.generate(rows);
+        records = new Record[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            records[i] = new Record(lines[i]);
+        }
+        directory = Files.createTempDirectory("records-bench").toFile();
+        logFile = new File(directory, "log.txt").getPath();
+        generator.write(logFile, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteExports() {
+        for (File file : directory.listFiles()) {
+            if (!file.getPath().equals(logFile)) {
+                file.delete();
+            }
+        }
+    }
+
+    private String exportName() {
+        return new File(directory, "export" + export++).getPath();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws Exception {
+        for (String line : lines) {
+            blackhole.consume(new Record(line));
+        }
+    }
+
+    @Benchmark
+    public Records addRecord() {
+        Records target = new Records();
+        for (Record record : records) {
+            target.addRecord(record);
+        }
+        return target;
+    }
+
+    @Benchmark
+    public Records importFromFile() throws Exception {
+        Records target = new Records();
+        target.setJsonName(new File(directory, "import" + export++ + "_").getPath());
+        target.importFromFile(logFile);
+        return target;
+    }
+
+    @Benchmark
+    public void exportToJson() throws Exception {
+        Records target = new Records();
+        target.setMaxRecords(rows);
+        for (Record record : records) {
+            target.addRecord(record);
+        }
+        target.exportToJson(exportName());
+    }
+
+    /**
+     * Exports the same records as <code>exportToJson</code> to a compressed segment to compare the cost of deflating
+     */
+    @Benchmark
+    public void exportToCompressedSegment() throws Exception {
+        Records target = new Records();
+        target.setMaxRecords(rows);
+        for (Record record : records) {
+            target.addRecord(record);
+        }
+        target.exportToCompressedSegment(exportName());
+    }
+
+    /**
+     * Exports half the records and then the whole log again, so the first half goes through the update path and
+     * rewrites the first file
+     */
+    @Benchmark
+    public void exportToJsonWithUpdates() throws Exception {
+        Records target = new Records();
+        target.setMaxRecords(rows);
+        for (int i = 0; i < records.length / 2; i++) {
+            target.addRecord(records[i]);
+        }
+        target.exportToJson(exportName());
+        for (Record record : records) {
+            target.addRecord(record);
+        }
+        target.exportToJson(exportName());
+    }
+}
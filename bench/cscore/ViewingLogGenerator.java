@@ -0,0 +1,81 @@
+package cscore;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Builds synthetic viewing logs in the STB|TITLE|PROVIDER|DATE|REV|VIEW_TIME format for the benchmarks. The same
+ * seed always gives the same log.
+ */
+public class ViewingLogGenerator {
+    private static final String[] PROVIDERS = {"warner bros", "hbo", "buena vista", "fox", "universal", "sony"};
+
+    private final int cardinality;
+    private final double duplicateRatio;
+    private final long seed;
+
+    /**
+     * @param cardinality the number of distinct set top boxes and titles
+     * @param duplicateRatio the share of rows that repeat the STB, TITLE and DATE of an earlier row, from 0 to 1
+     * @param seed the random seed
+     */
+    public ViewingLogGenerator(int cardinality, double duplicateRatio, long seed) {
+        this.cardinality = Math.max(1, cardinality);
+        this.duplicateRatio = duplicateRatio;
+        this.seed = seed;
+    }
+
+    /**
+     * @param rows the number of lines
+     * @return the lines of the log
+     */
+    public String[] generate(int rows) {
+        Random random = new Random(seed);
+        String[] lines = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            if (i > 0 && random.nextDouble() < duplicateRatio) {
+                // same key as an earlier row with new values so it is an update
+                String[] earlier = lines[random.nextInt(i)].split("\\|");
+                lines[i] = earlier[0] + "|" + earlier[1] + "|" + provider(random) + "|" + earlier[3] + "|"
+                        + rev(random) + "|" + viewTime(random);
+            }
+            else {
+                // the row number keeps new keys unique even when the cardinality is small
+                lines[i] = "stb" + random.nextInt(cardinality) + "|title " + random.nextInt(cardinality) + " "
+                        + i + "|" + provider(random) + "|2014-" + String.format("%02d", random.nextInt(12) + 1)
+                        + "-" + String.format("%02d", random.nextInt(28) + 1) + "|" + rev(random) + "|"
+                        + viewTime(random);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Writes the log to a file
+     * @param filename the file to write
+     * @param rows the number of lines
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String filename, int rows) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+            for (String line : generate(rows)) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String provider(Random random) {
+        return PROVIDERS[random.nextInt(PROVIDERS.length)];
+    }
+
+    private static String rev(Random random) {
+        return random.nextInt(20) + "." + String.format("%02d", random.nextInt(100));
+    }
+
+    private static String viewTime(Random random) {
+        return random.nextInt(24) + ":" + String.format("%02d", random.nextInt(60));
+    }
+}
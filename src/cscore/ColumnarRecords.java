@@ -0,0 +1,167 @@
+package cscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * Column store alternative to <code>Records</code> for keeping a large number of records in memory. STB, TITLE and
+ * PROVIDER are dictionary encoded into int ids and every field is kept in a growable primitive array, so a record
+ * costs a few dozen bytes instead of several objects. Records with the same STB, TITLE and DATE are overwritten by
+ * the most recent record. <code>Record</code> objects are only created when a row is read back.
+ */
+public class ColumnarRecords {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private StringDictionary stbs = new StringDictionary();
+    private StringDictionary titles = new StringDictionary();
+    private StringDictionary providers = new StringDictionary();
+
+    private int[] stbIds = new int[INITIAL_CAPACITY];
+    private int[] titleIds = new int[INITIAL_CAPACITY];
+    private int[] providerIds = new int[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private short[] viewMinutes = new short[INITIAL_CAPACITY];
+    private double[] revs = new double[INITIAL_CAPACITY];
+    private int count = 0;
+
+    // Open addressing table of row + 1 hashed on STB+TITLE+DATE, 0 is an empty slot
+    private int[] keyTable = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Adds the <code>Record</code>. If a record with the same STB+TITLE+DATE already exists its row is overwritten.
+     * @param record the data to add
+     */
+    public void addRecord(Record record) {
+        int stb = stbs.getId(record.getStb());
+        int title = titles.getId(record.getTitle());
+        int day = record.getEpochDay();
+
+        int slot = findSlot(stb, title, day);
+        int row = keyTable[slot] - 1;
+        if (row < 0) {
+            if (count == stbIds.length) {
+                grow();
+            }
+            row = count++;
+            keyTable[slot] = row + 1;
+            stbIds[row] = stb;
+            titleIds[row] = title;
+            epochDays[row] = day;
+            if (count * 2 > keyTable.length) {
+                rehash();
+            }
+        }
+        providerIds[row] = providers.getId(record.getProvider());
+        viewMinutes[row] = (short) record.getViewMinutes();
+        revs[row] = record.getRev();
+    }
+
+    /**
+     * Imports all records in a given file. Records with duplicate keys will be overwritten subsequent records. If
+     * there is any issue parsing a record, the record will be printed, skipped, and the import will continue.
+     * @param filename the name of the file to import from.
+     */
+    public void importFromFile(String filename) {
+        RecordParser parser = RecordParser.get();
+        Scanner reader;
+        try {
+            reader = new Scanner(new File(filename));
+        }
+        catch (IOException e) {
+            System.out.println("Error: could not open file '" + filename + "'");
+            return;
+        }
+        while (reader.hasNextLine()) {
+            String line = reader.nextLine();
+            try {
+                addRecord(parser.parse(line));
+            }
+            catch (Exception e) {
+                System.out.println("Error: Record could not be parsed '" + line + "'");
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * @return the total number if unique records
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Builds a <code>Record</code> for a row
+     * @param row the row from 0 to <code>getCount() - 1</code>
+     * @return a new record with the row's values
+     */
+    public Record getRecord(int row) {
+        return Record.fromFields(getStb(row), getTitle(row), getProvider(row), epochDays[row], viewMinutes[row],
+                revs[row]);
+    }
+
+    public String getStb(int row) {
+        return stbs.getValue(stbIds[row]);
+    }
+
+    public String getTitle(int row) {
+        return titles.getValue(titleIds[row]);
+    }
+
+    public String getProvider(int row) {
+        return providers.getValue(providerIds[row]);
+    }
+
+    public int getEpochDay(int row) {
+        return epochDays[row];
+    }
+
+    public int getViewMinutes(int row) {
+        return viewMinutes[row];
+    }
+
+    public double getRev(int row) {
+        return revs[row];
+    }
+
+    /**
+     * Finds the slot in the key table for the key, either the slot holding its row or the empty slot to use
+     */
+    private int findSlot(int stb, int title, int day) {
+        int mask = keyTable.length - 1;
+        int slot = hash(stb, title, day) & mask;
+        while (true) {
+            int row = keyTable[slot] - 1;
+            if (row < 0 || (stbIds[row] == stb && titleIds[row] == title && epochDays[row] == day)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(int stb, int title, int day) {
+        int h = (stb * 31 + title) * 31 + day;
+        // spread the bits so neighbouring ids don't cluster
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void grow() {
+        int capacity = stbIds.length * 2;
+        stbIds = Arrays.copyOf(stbIds, capacity);
+        titleIds = Arrays.copyOf(titleIds, capacity);
+        providerIds = Arrays.copyOf(providerIds, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        viewMinutes = Arrays.copyOf(viewMinutes, capacity);
+        revs = Arrays.copyOf(revs, capacity);
+    }
+
+    private void rehash() {
+        keyTable = new int[keyTable.length * 2];
+        for (int row = 0; row < count; row++) {
+            keyTable[findSlot(stbIds[row], titleIds[row], epochDays[row])] = row + 1;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package cscore;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>ColumnarRecords</code>
+ */
+public class ColumnarRecordsTest extends TestCase {
+
+    public void testAddRecord() throws Exception {
+        // Setup
+        ColumnarRecords records = new ColumnarRecords();
+        // Call
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.addRecord(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        // Test
+        assertEquals(2, records.getCount());
+        Record record = records.getRecord(1);
+        assertEquals("stb2", record.getStb());
+        assertEquals("the hobbit", record.getTitle());
+        assertEquals("warner bros", record.getProvider());
+        assertEquals("2014-04-02", record.getDate());
+        assertEquals(8.0, record.getRev());
+        assertEquals("2:45", record.getViewTime());
+    }
+
+    public void testAddRecordOverwrites() throws Exception {
+        // Setup
+        ColumnarRecords records = new ColumnarRecords();
+        // Call
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.addRecord(new Record("stb1|the matrix|hbo|2014-04-01|5.00|1:45"));
+        // Test
+        assertEquals(1, records.getCount());
+        assertEquals("hbo", records.getProvider(0));
+        assertEquals(5.0, records.getRev(0));
+        assertEquals(105, records.getViewMinutes(0));
+    }
+
+    public void testGrow() throws Exception {
+        // Setup
+        ColumnarRecords records = new ColumnarRecords();
+        // Call
+        for (int i = 0; i < 5000; i++) {
+            records.addRecord(new Record("stb" + i % 2500 + "|title|provider|2014-04-01|1.00|0:30"));
+        }
+        // Test
+        assertEquals(2500, records.getCount());
+        assertEquals("stb2499", records.getStb(2499));
+    }
+}
@@ -0,0 +1,148 @@
+package cscore;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a compressed segment written by <code>CompressedSegmentWriter</code>. The file is memory mapped and only the
+ * header, the block index and the dictionary are read up front. A block is inflated the first time one of its
+ * records is requested and is kept until a record from another block is requested, so reading the slots in order
+ * inflates every block once. A reader is not safe to share between threads.
+ */
+public class CompressedSegmentReader implements SlotReader {
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final int count;
+    private final int blockRows;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final String[] dictionary;
+    private final Inflater inflater = new Inflater();
+    private final ByteBuffer block;
+    private byte[] compressed = new byte[0];
+    private int current = -1;
+    private int blocksRead = 0;
+
+    /**
+     * Opens a compressed segment for reading
+     * @param filename the name of the compressed segment file
+     * @throws IOException if the file cannot be read or is not a compressed segment
+     */
+    public CompressedSegmentReader(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (data.limit() < CompressedSegmentWriter.HEADER_SIZE || data.getInt(0) != CompressedSegmentWriter.MAGIC) {
+            channel.close();
+            throw new IOException(filename + " is not a compressed segment file");
+        }
+        count = data.getInt(CompressedSegmentWriter.ROW_COUNT_OFFSET);
+        blockRows = data.getInt(CompressedSegmentWriter.BLOCK_ROWS_OFFSET);
+        int blockCount = data.getInt(CompressedSegmentWriter.BLOCK_COUNT_OFFSET);
+        int position = (int) data.getLong(CompressedSegmentWriter.INDEX_OFFSET_OFFSET);
+        // the dictionary's entry follows the entries of the blocks
+        offsets = new long[blockCount + 1];
+        lengths = new int[blockCount + 1];
+        int[] rawLengths = new int[blockCount + 1];
+        for (int i = 0; i <= blockCount; i++) {
+            offsets[i] = data.getLong(position);
+            lengths[i] = data.getInt(position + 8);
+            rawLengths[i] = data.getInt(position + 12);
+            position += CompressedSegmentWriter.INDEX_ENTRY_SIZE;
+        }
+        block = ByteBuffer.allocate(blockRows * SegmentWriter.SLOT_SIZE);
+
+        ByteBuffer strings = ByteBuffer.allocate(rawLengths[blockCount]);
+        inflate(blockCount, strings);
+        dictionary = new String[data.getInt(CompressedSegmentWriter.DICTIONARY_COUNT_OFFSET)];
+        position = 0;
+        for (int id = 0; id < dictionary.length; id++) {
+            int length = strings.getInt(position);
+            dictionary[id] = RecordParser.decode(strings, position + 4, position + 4 + length);
+            position += 4 + length;
+        }
+    }
+
+    /**
+     * @param filename the name of the file to check
+     * @return true if the file starts with the compressed segment magic number
+     */
+    public static boolean isCompressedSegment(String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            return file.length() >= CompressedSegmentWriter.HEADER_SIZE
+                    && file.readInt() == CompressedSegmentWriter.MAGIC;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of records in the segment
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of blocks inflated so far
+     */
+    public int getBlocksRead() {
+        return blocksRead;
+    }
+
+    /**
+     * Decodes the record in a slot, inflating its block if it isn't the current one
+     * @param slot the slot from 0 to <code>getCount() - 1</code>
+     * @return a new record with the slot's values
+     * @throws IOException if the block cannot be inflated
+     */
+    @Override
+    public Record getRecord(int slot) throws IOException {
+        if (slot < 0 || slot >= count) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " is not in the segment");
+        }
+        int blockNumber = slot / blockRows;
+        if (blockNumber != current) {
+            block.clear();
+            inflate(blockNumber, block);
+            current = blockNumber;
+            blocksRead++;
+        }
+        return SegmentReader.readSlot(block, (slot % blockRows) * SegmentWriter.SLOT_SIZE, dictionary);
+    }
+
+    /**
+     * Inflates an entry of the index into the buffer
+     */
+    private void inflate(int entry, ByteBuffer into) throws IOException {
+        if (compressed.length < lengths[entry]) {
+            compressed = new byte[lengths[entry]];
+        }
+        ByteBuffer source = data.duplicate();
+        source.position((int) offsets[entry]);
+        source.get(compressed, 0, lengths[entry]);
+        inflater.reset();
+        inflater.setInput(compressed, 0, lengths[entry]);
+        try {
+            int size = inflater.inflate(into.array(), 0, into.capacity());
+            into.limit(size);
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Block " + entry + " is corrupt", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
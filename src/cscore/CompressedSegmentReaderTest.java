@@ -0,0 +1,111 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Tests for <code>CompressedSegmentWriter</code> and <code>CompressedSegmentReader</code>
+ */
+public class CompressedSegmentReaderTest extends TestCase {
+
+    public void testWriteRead() throws Exception {
+        // Setup
+        String filename = "TempCompressedSegment";
+        CompressedSegmentWriter writer = new CompressedSegmentWriter(filename);
+        // Call
+        writer.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        writer.add(new Record("stb2|the matrix|warner bros|2014-04-02|0.99|0:05"));
+        writer.add(new Record("stb3|am\u00e9lie|studiocanal|2014-04-03|3.50|2:02"));
+        writer.close();
+        CompressedSegmentReader reader = new CompressedSegmentReader(filename);
+        // Test
+        assertTrue(CompressedSegmentReader.isCompressedSegment(filename));
+        assertFalse(SegmentReader.isSegment(filename));
+        assertTrue(SlotReader.canOpen(filename));
+        assertEquals(3, reader.getCount());
+        Record record = reader.getRecord(1);
+        assertEquals("stb2", record.getStb());
+        assertEquals("the matrix", record.getTitle());
+        assertEquals("warner bros", record.getProvider());
+        assertEquals("2014-04-02", record.getDate());
+        assertEquals(0.99, record.getRev());
+        assertEquals(5, record.getViewMinutes());
+        assertEquals("am\u00e9lie", reader.getRecord(2).getTitle());
+        reader.close();
+        // Cleanup
+        new File(filename).delete();
+    }
+
+    public void testOnlyNeededBlocksAreInflated() throws Exception {
+        // Setup
+        String filename = "TempCompressedSegment";
+        int count = CompressedSegmentWriter.BLOCK_ROWS * 3 + 10;
+        CompressedSegmentWriter writer = new CompressedSegmentWriter(filename);
+        for (int i = 0; i < count; i++) {
+            writer.add(new Record("stb" + i + "|title" + (i % 7) + "|provider|2014-04-01|1.00|1:30"));
+        }
+        writer.close();
+        CompressedSegmentReader reader = new CompressedSegmentReader(filename);
+        // Call
+        Record last = reader.getRecord(count - 1);
+        Record again = reader.getRecord(count - 2);
+        // Test
+        assertEquals(count, reader.getCount());
+        assertEquals("stb" + (count - 1), last.getStb());
+        assertEquals("stb" + (count - 2), again.getStb());
+        assertEquals(1, reader.getBlocksRead());
+        assertTrue(new File(filename).length() < (long) count * SegmentWriter.SLOT_SIZE / 2);
+        reader.close();
+        // Cleanup
+        new File(filename).delete();
+    }
+
+    public void testExportAndUpdate() throws Exception {
+        // Setup
+        String filename = "TempCompressedExport";
+        Records records = new Records();
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.addRecord(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        records.exportToCompressedSegment(filename);
+        // Call
+        records.addRecord(new Record("stb2|the hobbit|new line|2014-04-02|9.50|2:45"));
+        records.exportToCompressedSegment(filename + "2");
+        ArrayList<Record> read = new ArrayList<>();
+        try (SlotReader reader = SlotReader.open(filename)) {
+            for (int i = 0; i < reader.getCount(); i++) {
+                read.add(reader.getRecord(i));
+            }
+        }
+        // Test
+        assertEquals(2, read.size());
+        Record updated = read.get(0).getStb().equals("stb2") ? read.get(0) : read.get(1);
+        assertEquals("new line", updated.getProvider());
+        assertEquals(9.5, updated.getRev());
+        assertFalse(new File(filename + ".tmp").exists());
+        // Cleanup
+        for (String file : new String[]{filename, filename + "2"}) {
+            new File(file).delete();
+            new File(file + SegmentStats.SUFFIX).delete();
+        }
+    }
+
+    public void testNotCompressedSegment() throws Exception {
+        // Setup
+        String filename = "TempCompressedSegment";
+        SegmentWriter writer = new SegmentWriter(filename);
+        writer.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        writer.close();
+        // Test
+        assertFalse(CompressedSegmentReader.isCompressedSegment(filename));
+        try {
+            new CompressedSegmentReader(filename);
+            fail("a plain segment is not compressed");
+        }
+        catch (java.io.IOException e) {
+            assertTrue(true);
+        }
+        // Cleanup
+        new File(filename).delete();
+    }
+}
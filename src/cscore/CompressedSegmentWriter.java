@@ -0,0 +1,150 @@
+package cscore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes records to a compressed segment. Rows use the same slots as <code>SegmentWriter</code> but are grouped into
+ * blocks of <code>BLOCK_ROWS</code> and each block is deflated on its own, so a reader only has to inflate the blocks
+ * holding the records it wants. The layout is:
+ * <pre>
+ * header      MAGIC, VERSION, SLOT_SIZE, row count, BLOCK_ROWS, dictionary count, block count, index offset
+ * blocks      the deflated slots of each block
+ * dictionary  the deflated strings referenced by the ids, each one a length followed by its UTF-8 bytes
+ * index       for each block and then the dictionary its offset, deflated length and inflated length
+ * </pre>
+ * Blocks are deflated at the fastest level as they fill up, only the dictionary and the index are kept in memory
+ * until the segment is closed.
+ */
+public class CompressedSegmentWriter implements SlotWriter {
+    public static final int MAGIC = 0x4353475A; // "CSGZ"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int BLOCK_ROWS = 4096;
+    public static final int INDEX_ENTRY_SIZE = 16;
+    // header field offsets
+    static final int ROW_COUNT_OFFSET = 8;
+    static final int BLOCK_ROWS_OFFSET = 12;
+    static final int DICTIONARY_COUNT_OFFSET = 16;
+    static final int BLOCK_COUNT_OFFSET = 20;
+    static final int INDEX_OFFSET_OFFSET = 24;
+
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_ROWS * SegmentWriter.SLOT_SIZE);
+    private final StringDictionary dictionary = new StringDictionary();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private byte[] compressed = new byte[block.capacity()];
+    private int count = 0;
+    private int blockCount = 0;
+
+    /**
+     * Creates a new compressed segment, replacing the file if it already exists
+     * @param filename the name of the compressed segment file
+     * @throws IOException if the file cannot be created
+     */
+    public CompressedSegmentWriter(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Appends a record to the segment, deflating the current block once it is full
+     * @param record the data to write
+     * @return the slot the record was written to
+     * @throws IOException if the write fails
+     */
+    @Override
+    public int add(Record record) throws IOException {
+        SegmentWriter.writeSlot(block, dictionary, record);
+        if (!block.hasRemaining()) {
+            writeBlock();
+        }
+        return count++;
+    }
+
+    /**
+     * @return the number of records written so far
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the last block, the dictionary, the index and the header and closes the file
+     * @throws IOException if the write fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (block.position() > 0) {
+            writeBlock();
+        }
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(strings);
+        for (int id = 0; id < dictionary.size(); id++) {
+            byte[] bytes = dictionary.getValue(id).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        write(strings.toByteArray(), strings.size());
+        long indexOffset = channel.position();
+        writeFully(ByteBuffer.wrap(index.toByteArray()));
+        deflater.end();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) SegmentWriter.SLOT_SIZE);
+        header.putInt(count);
+        header.putInt(BLOCK_ROWS);
+        header.putInt(dictionary.size());
+        header.putInt(blockCount);
+        header.putLong(indexOffset);
+        header.rewind();
+        channel.write(header, 0);
+        channel.close();
+    }
+
+    private void writeBlock() throws IOException {
+        write(block.array(), block.position());
+        block.clear();
+        blockCount++;
+    }
+
+    /**
+     * Deflates the bytes to the end of the file and adds an index entry for them
+     */
+    private void write(byte[] raw, int length) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw, 0, length);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            size += deflater.deflate(compressed, size, compressed.length - size);
+        }
+        DataOutputStream entry = new DataOutputStream(index);
+        entry.writeLong(channel.position());
+        entry.writeInt(size);
+        entry.writeInt(length);
+        writeFully(ByteBuffer.wrap(compressed, 0, size));
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
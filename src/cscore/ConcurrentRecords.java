@@ -0,0 +1,283 @@
+package cscore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <code>Records</code> that can be added to from many threads at once. Records go into a
+ * <code>ConcurrentHashMap</code> keyed by STB+TITLE+DATE, so adds only contend when they land in the same bin and
+ * the most recent record for a key still wins. When <code>maxRecords</code> adds have gone into the current batch it
+ * is sealed, swapped for an empty batch in one step and exported. Batches are exported one at a time in the order
+ * they were filled so later batches update the files of earlier ones.
+ * With the write ahead log enabled every batch logs to its own file, named after the log with the batch's generation
+ * appended, which is deleted once the batch has been exported and synced. Records added to the next batch while one
+ * is exporting are never in the log being deleted.
+ */
+public class ConcurrentRecords extends Records {
+    private final AtomicReference<Batch> current = new AtomicReference<>(new Batch());
+    private final Object rolloverLock = new Object();
+    private String logName = null;
+    private int logGeneration = 0;
+
+    /**
+     * The records being added between two exports
+     */
+    private static class Batch {
+        final ConcurrentHashMap<RecordKey, Record> records = new ConcurrentHashMap<>();
+        final AtomicInteger added = new AtomicInteger();
+        // threads currently adding to this batch, the export waits for them once the batch is sealed
+        final AtomicInteger writers = new AtomicInteger();
+        // the log of the records added to this batch, null when there is no write ahead log
+        final WriteAheadLog log;
+        volatile boolean sealed = false;
+
+        Batch() {
+            this(null);
+        }
+
+        Batch(WriteAheadLog log) {
+            this.log = log;
+        }
+    }
+
+    /**
+     * Exports the records in a batch that has been sealed
+     */
+    private interface BatchExporter {
+        void export(Map<RecordKey, Record> batch) throws Exception;
+    }
+
+    /**
+     * Adds the <code>Record</code>, overwriting any record with the same key. Safe to call from any number of
+     * threads. The thread that fills the batch exports it.
+     * @param record the data to add
+     */
+    @Override
+    public void addRecord(Record record) {
+        RecordKey key = record.getRecordKey();
+        while (true) {
+            Batch batch = current.get();
+            batch.writers.incrementAndGet();
+            if (batch.sealed) {
+                // the batch is being swapped out, retry on the new one
+                batch.writers.decrementAndGet();
+                Thread.yield();
+                continue;
+            }
+            int added;
+            try {
+                if (batch.log != null) {
+                    batch.log.append(record);
+                }
+                if (batch.records.put(key, record) != null) {
+                    Metrics.increment(Metrics.Counter.DUPLICATES_OVERWRITTEN);
+                }
+                added = batch.added.incrementAndGet();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finally {
+                batch.writers.decrementAndGet();
+            }
+
+            if (added == getMaxRecords()) {
+                // the name is only taken when this thread is the one that rolls the batch over
+                String[] filename = {null};
+                try {
+                    rollover(batch, map -> exportLater(map, filename[0] = nextExportName()));
+                }
+                catch (Exception e) {
+                    System.out.println("Error: could not export '" + filename[0] + "'");
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Adds a record read during an import, the export happens in <code>addRecord</code>
+     */
+    @Override
+    protected void importRecord(Record record) {
+        addRecord(record);
+    }
+
+    /**
+     * @return the number of unique records in the current batch
+     */
+    @Override
+    public int getCount() {
+        return current.get().records.size();
+    }
+
+    /**
+     * Exports the current batch using the format set by <code>setExportFormat</code>
+     */
+    @Override
+    public void export(String filename) throws Exception {
+        rollover(null, batch -> exportLater(batch, filename));
+    }
+
+    /**
+     * Exports the current batch into a json file
+     */
+    @Override
+    public void exportToJson(String filename) throws Exception {
+        rollover(null, batch -> exportToJson(filename, batch));
+    }
+
+    /**
+     * Exports the current batch into a segment file
+     */
+    @Override
+    public void exportToSegment(String filename) throws Exception {
+        rollover(null, batch -> exportToSegment(filename, batch));
+    }
+
+    /**
+     * Exports the current batch into a compressed segment file
+     */
+    @Override
+    public void exportToCompressedSegment(String filename) throws Exception {
+        rollover(null, batch -> exportToCompressedSegment(filename, batch));
+    }
+
+    /**
+     * Logs every added record to the log file of its batch. The logs of batches that weren't exported before a
+     * restart are replayed in order first, and deleted once their records are in the new logs.
+     * @param filename the base name of the log files
+     * @throws IOException if a log cannot be opened or replayed
+     */
+    @Override
+    public void enableWriteAheadLog(String filename) throws IOException {
+        if (isAsyncExport()) {
+            throw new IllegalStateException("The write ahead log cannot be used with asynchronous exports");
+        }
+        TreeMap<Integer, File> previous = logFiles(filename);
+        synchronized (rolloverLock) {
+            logName = filename;
+            logGeneration = previous.isEmpty() ? 0 : previous.lastKey() + 1;
+            // records added before the log was enabled move to the logged batch, later adds win
+            Batch batch = current.get();
+            batch.sealed = true;
+            Batch logged = new Batch(new WriteAheadLog(logName + "." + logGeneration++));
+            current.set(logged);
+            while (batch.writers.get() != 0) {
+                Thread.yield();
+            }
+            for (Map.Entry<RecordKey, Record> entry : batch.records.entrySet()) {
+                logged.records.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+            logged.added.addAndGet(batch.added.get());
+        }
+        for (File file : previous.values()) {
+            WriteAheadLog old = new WriteAheadLog(file.getPath());
+            old.replay(this::addRecord);
+            old.close();
+        }
+        if (!previous.isEmpty()) {
+            // the replayed records have to be durable in the new logs before the old ones go
+            synchronized (rolloverLock) {
+                current.get().log.commit();
+            }
+            for (File file : previous.values()) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the write ahead log is enabled
+     */
+    @Override
+    public void enableAsyncExport(int maxPending) {
+        if (isLogged()) {
+            throw new IllegalStateException("Asynchronous exports cannot be used with the write ahead log");
+        }
+        super.enableAsyncExport(maxPending);
+    }
+
+    @Override
+    protected boolean isLogged() {
+        return logName != null;
+    }
+
+    /**
+     * Stops the flusher and closes the index and the log of the current batch, which is kept so it can be replayed
+     * @throws IOException if the final commit fails
+     */
+    @Override
+    public void close() throws IOException {
+        super.close();
+        synchronized (rolloverLock) {
+            WriteAheadLog log = current.get().log;
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+
+    /**
+     * @return the existing log files of each generation for the base name, in generation order
+     */
+    private static TreeMap<Integer, File> logFiles(String filename) {
+        TreeMap<Integer, File> files = new TreeMap<>();
+        File base = new File(filename).getAbsoluteFile();
+        File[] siblings = base.getParentFile().listFiles();
+        if (siblings == null) {
+            return files;
+        }
+        String prefix = base.getName() + ".";
+        for (File file : siblings) {
+            String name = file.getName();
+            if (name.startsWith(prefix) && name.length() > prefix.length()
+                    && name.substring(prefix.length()).chars().allMatch(Character::isDigit)) {
+                files.put(Integer.parseInt(name.substring(prefix.length())), file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Seals the current batch, replaces it with an empty one and exports it once every thread still adding to it
+     * has finished. Only one rollover runs at a time so batches are exported, or handed to the flusher, in order.
+     * With a write ahead log the new batch gets the next log file and the sealed batch's log is deleted after its
+     * export.
+     * @param expected the batch to roll over, or null for whatever batch is current
+     * @param exporter writes the batch to its file
+     * @throws Exception if the export fails
+     */
+    private void rollover(Batch expected, BatchExporter exporter) throws Exception {
+        synchronized (rolloverLock) {
+            Batch batch = current.get();
+            if (expected != null && batch != expected) {
+                return;
+            }
+            batch.sealed = true;
+            WriteAheadLog log = logName == null ? null : new WriteAheadLog(logName + "." + logGeneration++);
+            current.set(new Batch(log));
+            while (batch.writers.get() != 0) {
+                Thread.yield();
+            }
+            try {
+                exporter.export(batch.records);
+            }
+            finally {
+                if (batch.log != null) {
+                    batch.log.close();
+                }
+            }
+            if (batch.log != null) {
+                // the export synced its files so the batch's log isn't needed anymore, a failed export keeps it
+                new File(batch.log.getFilename()).delete();
+            }
+        }
+    }
+}
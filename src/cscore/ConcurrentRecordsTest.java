@@ -0,0 +1,198 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.io.FileReader;
+import java.util.HashMap;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+/**
+ * Stress tests for <code>ConcurrentRecords</code>. Every thread writes increasing versions of its own keys and of a
+ * set of keys shared by all threads, with batches small enough that many rollovers happen during the run.
+ */
+public class ConcurrentRecordsTest extends TestCase {
+    private static final int THREADS = 8;
+    private static final int KEYS = 20;
+    private static final int VERSIONS = 50;
+    private static final String NAME = "TempConcurrent";
+
+    private Record createRecord(String stb, int version) throws Exception {
+        return new Record(stb, "title", "provider", "2014-04-01", version, "1:30");
+    }
+
+    private void runThreads(ConcurrentRecords records) throws Exception {
+        Thread[] threads = new Thread[THREADS];
+        Exception[] errors = new Exception[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int version = 0; version < VERSIONS; version++) {
+                        for (int key = 0; key < KEYS; key++) {
+                            records.addRecord(createRecord("t" + thread + "k" + key, version));
+                            records.addRecord(createRecord("shared" + key, version * THREADS + thread));
+                        }
+                    }
+                }
+                catch (Exception e) {
+                    errors[thread] = e;
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (int t = 0; t < THREADS; t++) {
+            threads[t].join();
+            assertNull(errors[t]);
+        }
+    }
+
+    /**
+     * Reads every exported file and returns the REV of each STB, failing if an STB was exported twice
+     */
+    private HashMap<String, Double> readExports() throws Exception {
+        HashMap<String, Double> revs = new HashMap<>();
+        JSONParser parser = new JSONParser();
+        for (int i = 0; new File(NAME + i).exists(); i++) {
+            FileReader reader = new FileReader(NAME + i);
+            JSONArray list = (JSONArray) parser.parse(reader);
+            reader.close();
+            for (Object obj : list) {
+                String stb = (String) ((JSONObject) obj).get("STB");
+                assertNull(stb + " was exported twice", revs.put(stb, (Double) ((JSONObject) obj).get("REV")));
+            }
+        }
+        return revs;
+    }
+
+    private void deleteExports() {
+        for (int i = 0; new File(NAME + i).exists(); i++) {
+            new File(NAME + i).delete();
+            new File(NAME + i + SegmentStats.SUFFIX).delete();
+        }
+    }
+
+    public void testLastWriterWins() throws Exception {
+        // Setup
+        deleteExports();
+        ConcurrentRecords records = new ConcurrentRecords();
+        records.setMaxRecords(100);
+        records.setJsonName(NAME);
+        // Call
+        runThreads(records);
+        // export whatever is left in the last batch
+        records.exportToJson(NAME + "Last");
+        HashMap<String, Double> revs = readExports();
+        JSONArray last = (JSONArray) new JSONParser().parse(new FileReader(NAME + "Last"));
+        for (Object obj : last) {
+            assertNull(revs.put((String) ((JSONObject) obj).get("STB"), (Double) ((JSONObject) obj).get("REV")));
+        }
+        // Test
+        assertEquals(THREADS * KEYS + KEYS, revs.size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int key = 0; key < KEYS; key++) {
+                // each thread's own keys must end on the last version it wrote
+                assertEquals((double) VERSIONS - 1, revs.get("t" + t + "k" + key));
+            }
+        }
+        for (int key = 0; key < KEYS; key++) {
+            // shared keys must end on one of the last versions written by some thread
+            assertTrue(revs.get("shared" + key) >= (VERSIONS - 1) * THREADS);
+        }
+        // Cleanup
+        deleteExports();
+        new File(NAME + "Last").delete();
+        new File(NAME + "Last" + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testCount() throws Exception {
+        // Setup
+        ConcurrentRecords records = new ConcurrentRecords();
+        records.setMaxRecords(Integer.MAX_VALUE);
+        // Call
+        runThreads(records);
+        // Test
+        assertEquals(THREADS * KEYS + KEYS, records.getCount());
+    }
+
+    public void testExportToCompressedSegment() throws Exception {
+        // Setup
+        String filename = NAME + "Compressed";
+        ConcurrentRecords records = new ConcurrentRecords();
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.addRecord(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        // Call
+        records.exportToCompressedSegment(filename);
+        // Test
+        assertEquals(0, records.getCount());
+        try (SlotReader reader = SlotReader.open(filename)) {
+            assertEquals(2, reader.getCount());
+        }
+        // Cleanup
+        new File(filename).delete();
+        new File(filename + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testAsyncExport() throws Exception {
+        // Setup
+        deleteExports();
+        ConcurrentRecords records = new ConcurrentRecords();
+        records.setMaxRecords(100);
+        records.setJsonName(NAME);
+        records.enableAsyncExport(2);
+        // Call
+        runThreads(records);
+        records.export(NAME + "Last");
+        records.awaitExports();
+        records.close();
+        HashMap<String, Double> revs = readExports();
+        JSONArray last = (JSONArray) new JSONParser().parse(new FileReader(NAME + "Last"));
+        for (Object obj : last) {
+            assertNull(revs.put((String) ((JSONObject) obj).get("STB"), (Double) ((JSONObject) obj).get("REV")));
+        }
+        // Test
+        assertEquals(THREADS * KEYS + KEYS, revs.size());
+        for (int t = 0; t < THREADS; t++) {
+            for (int key = 0; key < KEYS; key++) {
+                assertEquals((double) VERSIONS - 1, revs.get("t" + t + "k" + key));
+            }
+        }
+        // Cleanup
+        deleteExports();
+        new File(NAME + "Last").delete();
+        new File(NAME + "Last" + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testWriteAheadLogReplay() throws Exception {
+        // Setup
+        deleteExports();
+        String logName = "TempConcurrentLog";
+        ConcurrentRecords records = new ConcurrentRecords();
+        records.setMaxRecords(150);
+        records.setJsonName(NAME);
+        records.enableWriteAheadLog(logName);
+        runThreads(records);
+        int unexported = records.getCount();
+        records.close();
+        // Call
+        ConcurrentRecords restarted = new ConcurrentRecords();
+        restarted.setMaxRecords(Integer.MAX_VALUE);
+        restarted.enableWriteAheadLog(logName);
+        int replayed = restarted.getCount();
+        restarted.close();
+        // Test
+        assertTrue(unexported > 0);
+        assertEquals(unexported, replayed);
+        // only the log of the batch that is still open is left
+        File[] logs = new File(".").listFiles((dir, name) -> name.startsWith(logName + "."));
+        assertEquals(1, logs.length);
+        // Cleanup
+        for (File log : logs) {
+            log.delete();
+        }
+        deleteExports();
+    }
+}
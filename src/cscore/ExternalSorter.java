@@ -0,0 +1,275 @@
+package cscore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts any number of records with a fixed amount of memory. Records are buffered until <code>maxInMemory</code>
+ * of them have been added, then the buffer is sorted and spilled to a temporary run file. When the records are read
+ * back the runs are merged, at most <code>MAX_FAN_IN</code> at a time so the open files stay bounded. With more runs
+ * than that, consecutive runs are first merged into longer runs until few enough are left. The sort is stable, records
+ * that compare equal come out in the order they were added.
+ */
+public class ExternalSorter {
+    public static final int MAX_FAN_IN = 64;
+    private final Comparator<Record> comparator;
+    private final int maxInMemory;
+    private final List<Record> buffer = new ArrayList<>();
+    private final List<File> runs = new ArrayList<>();
+
+    /**
+     * @param comparator the order to sort by
+     * @param maxInMemory the number of records to hold before spilling a run to disk
+     */
+    public ExternalSorter(Comparator<Record> comparator, int maxInMemory) {
+        this.comparator = comparator;
+        this.maxInMemory = Math.max(1, maxInMemory);
+    }
+
+    /**
+     * @param record the record to sort
+     * @throws IOException if a run cannot be written
+     */
+    public void add(Record record) throws IOException {
+        buffer.add(record);
+        if (buffer.size() >= maxInMemory) {
+            spill();
+        }
+    }
+
+    /**
+     * @return the number of records held in memory
+     */
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Spills the records held in memory to a run so a finished sorter waiting to be merged holds none
+     * @throws IOException if the run cannot be written
+     */
+    public void flush() throws IOException {
+        spill();
+    }
+
+    /**
+     * @return the number of runs written to disk so far
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * Merges sorters that were filled separately, for example one per segment, and passes their records to the sink
+     * in sorted order. Records that compare equal come out in the order of the sorters and then the order they were
+     * added. The sorters are emptied.
+     * @param sorters the sorters to merge, all sorting in the same order
+     * @param sink receives each record, returns false to stop
+     * @throws Exception if a run cannot be read or written or the sink fails
+     */
+    public static void merge(List<ExternalSorter> sorters, RecordSink sink) throws Exception {
+        if (sorters.isEmpty()) {
+            return;
+        }
+        ExternalSorter merged = new ExternalSorter(sorters.get(0).comparator, sorters.get(0).maxInMemory);
+        int buffered = 0;
+        boolean spilled = false;
+        for (ExternalSorter sorter : sorters) {
+            buffered += sorter.buffer.size();
+            spilled |= !sorter.runs.isEmpty();
+        }
+        for (ExternalSorter sorter : sorters) {
+            if (spilled || buffered > merged.maxInMemory) {
+                // each sorter becomes runs in the merge, in order so ties stay stable
+                sorter.spill();
+                merged.runs.addAll(sorter.runs);
+            }
+            else {
+                // everything fits so the buffers are sorted together, the sort is stable
+                merged.buffer.addAll(sorter.buffer);
+            }
+            sorter.buffer.clear();
+            sorter.runs.clear();
+        }
+        merged.forEach(sink);
+    }
+
+    /**
+     * Passes the records to the sink in sorted order and deletes the runs
+     * @param sink receives each record, returns false to stop
+     * @throws Exception if a run cannot be read or the sink fails
+     */
+    public void forEach(RecordSink sink) throws Exception {
+        if (runs.isEmpty()) {
+            // everything fit in memory
+            buffer.sort(comparator);
+            for (Record record : buffer) {
+                if (!sink.accept(record)) {
+                    break;
+                }
+            }
+            buffer.clear();
+            return;
+        }
+
+        spill();
+        try {
+            while (runs.size() > MAX_FAN_IN) {
+                mergePass();
+            }
+            mergeRuns(runs, sink);
+        }
+        finally {
+            for (File file : runs) {
+                file.delete();
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Merges each group of <code>MAX_FAN_IN</code> consecutive runs into one longer run. Merging neighbours keeps the
+     * earlier records ahead of the later ones so the sort stays stable.
+     */
+    private void mergePass() throws Exception {
+        List<File> merged = new ArrayList<>();
+        try {
+            for (int start = 0; start < runs.size(); start += MAX_FAN_IN) {
+                List<File> group = runs.subList(start, Math.min(start + MAX_FAN_IN, runs.size()));
+                File file = File.createTempFile("sort-run", ".tmp");
+                file.deleteOnExit();
+                merged.add(file);
+                try (DataOutputStream out = openRun(file)) {
+                    mergeRuns(group, record -> {
+                        writeRecord(out, record);
+                        return true;
+                    });
+                }
+                for (File run : group) {
+                    run.delete();
+                }
+            }
+        }
+        catch (Exception e) {
+            for (File file : merged) {
+                file.delete();
+            }
+            throw e;
+        }
+        runs.clear();
+        runs.addAll(merged);
+    }
+
+    /**
+     * Passes the records of the runs to the sink in sorted order
+     */
+    private void mergeRuns(List<File> files, RecordSink sink) throws Exception {
+        // ties go to the earlier run so the merge stays stable
+        PriorityQueue<Run> heads = new PriorityQueue<>((a, b) -> {
+            int compare = comparator.compare(a.head, b.head);
+            return compare != 0 ? compare : Integer.compare(a.number, b.number);
+        });
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                Run run = new Run(files.get(i), i);
+                if (run.next()) {
+                    heads.add(run);
+                }
+                else {
+                    run.close();
+                }
+            }
+            while (!heads.isEmpty()) {
+                Run run = heads.poll();
+                if (!sink.accept(run.head)) {
+                    run.close();
+                    break;
+                }
+                if (run.next()) {
+                    heads.add(run);
+                }
+                else {
+                    run.close();
+                }
+            }
+        }
+        finally {
+            for (Run run : heads) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Sorts the buffer and writes it to a new run file
+     */
+    private void spill() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        buffer.sort(comparator);
+        File file = File.createTempFile("sort-run", ".tmp");
+        file.deleteOnExit();
+        DataOutputStream out = openRun(file);
+        for (Record record : buffer) {
+            writeRecord(out, record);
+        }
+        out.close();
+        runs.add(file);
+        buffer.clear();
+    }
+
+    private static DataOutputStream openRun(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeUTF(record.getStb());
+        out.writeUTF(record.getTitle());
+        out.writeUTF(record.getProvider());
+        out.writeInt(record.getEpochDay());
+        out.writeShort(record.getViewMinutes());
+        out.writeDouble(record.getRev());
+    }
+
+    /**
+     * Reads the records of one run in order
+     */
+    private static class Run {
+        final DataInputStream in;
+        final int number;
+        Record head;
+
+        Run(File file, int number) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            this.number = number;
+        }
+
+        boolean next() throws IOException {
+            try {
+                String stb = in.readUTF();
+                head = Record.fromFields(stb, in.readUTF(), in.readUTF(), in.readInt(), in.readShort(),
+                        in.readDouble());
+                return true;
+            }
+            catch (EOFException e) {
+                return false;
+            }
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+}
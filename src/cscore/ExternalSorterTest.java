@@ -0,0 +1,170 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.util.ArrayList;
+
+/**
+ * Tests for <code>ExternalSorter</code> and <code>RecordComparator</code>
+ */
+public class ExternalSorterTest extends TestCase {
+
+    private ArrayList<Record> sort(String[] order, int maxInMemory, String... lines) throws Exception {
+        ExternalSorter sorter = new ExternalSorter(new RecordComparator(order), maxInMemory);
+        for (String line : lines) {
+            sorter.add(new Record(line));
+        }
+        ArrayList<Record> sorted = new ArrayList<>();
+        sorter.forEach(sorted::add);
+        return sorted;
+    }
+
+    public void testSortRevNumerically() throws Exception {
+        // Call
+        ArrayList<Record> sorted = sort(new String[]{"REV"}, 100,
+                "stb1|the matrix|warner bros|2014-04-01|10.00|1:30",
+                "stb2|the hobbit|warner bros|2014-04-02|4.00|2:45",
+                "stb3|unbreakable|buena vista|2014-04-03|6.00|2:05");
+        // Test
+        assertEquals(4.0, sorted.get(0).getRev());
+        assertEquals(6.0, sorted.get(1).getRev());
+        assertEquals(10.0, sorted.get(2).getRev());
+    }
+
+    public void testSortDescending() throws Exception {
+        // Call
+        ArrayList<Record> sorted = sort(new String[]{"REV:desc", "STB"}, 2,
+                "stb1|the matrix|warner bros|2014-04-01|10.00|1:30",
+                "stb2|the hobbit|warner bros|2014-04-02|4.00|2:45",
+                "stb4|unbreakable|buena vista|2014-04-03|6.00|2:05",
+                "stb3|unbreakable|buena vista|2014-04-03|6.00|2:05");
+        // Test
+        assertEquals("stb1", sorted.get(0).getStb());
+        assertEquals("stb3", sorted.get(1).getStb());
+        assertEquals("stb4", sorted.get(2).getStb());
+        assertEquals("stb2", sorted.get(3).getStb());
+    }
+
+    public void testSortSpillsAndStaysStable() throws Exception {
+        // Setup
+        String[] lines = new String[50];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = "stb" + i + "|title" + (i % 5) + "|provider|2014-04-0" + (i % 3 + 1) + "|1.00|1:30";
+        }
+        ExternalSorter sorter = new ExternalSorter(new RecordComparator(new String[]{"DATE", "TITLE"}), 7);
+        for (String line : lines) {
+            sorter.add(new Record(line));
+        }
+        ArrayList<Record> sorted = new ArrayList<>();
+        // Call
+        int runs = sorter.getRunCount();
+        sorter.forEach(sorted::add);
+        // Test
+        assertTrue(runs > 1);
+        assertEquals(50, sorted.size());
+        assertSortedAndStable(sorted);
+    }
+
+    public void testMergeMoreRunsThanFanIn() throws Exception {
+        // Setup
+        int count = ExternalSorter.MAX_FAN_IN * ExternalSorter.MAX_FAN_IN + 100;
+        ExternalSorter sorter = new ExternalSorter(new RecordComparator(new String[]{"DATE", "TITLE"}), 1);
+        for (int i = 0; i < count; i++) {
+            sorter.add(new Record("stb" + i + "|title" + (i % 5) + "|provider|2014-04-0" + (i % 3 + 1)
+                    + "|1.00|1:30"));
+        }
+        ArrayList<Record> sorted = new ArrayList<>();
+        // Call
+        int runs = sorter.getRunCount();
+        sorter.forEach(sorted::add);
+        // Test
+        assertEquals(count, runs);
+        assertEquals(count, sorted.size());
+        assertEquals(0, sorter.getRunCount());
+        assertSortedAndStable(sorted);
+    }
+
+    private void assertSortedAndStable(ArrayList<Record> sorted) throws Exception {
+        for (int i = 1; i < sorted.size(); i++) {
+            Record previous = sorted.get(i - 1);
+            Record current = sorted.get(i);
+            int compare = new RecordComparator(new String[]{"DATE", "TITLE"}).compare(previous, current);
+            assertTrue(compare <= 0);
+            if (compare == 0) {
+                // equal records keep the order they were added in
+                int previousNumber = Integer.parseInt(previous.getStb().substring(3));
+                int currentNumber = Integer.parseInt(current.getStb().substring(3));
+                assertTrue(previousNumber < currentNumber);
+            }
+        }
+    }
+
+    public void testMergeSorters() throws Exception {
+        for (int maxInMemory : new int[]{100, 3}) {
+            // Setup
+            ArrayList<ExternalSorter> sorters = new ArrayList<>();
+            for (int s = 0; s < 3; s++) {
+                ExternalSorter sorter = new ExternalSorter(new RecordComparator(new String[]{"REV"}), maxInMemory);
+                for (int i = 0; i < 5; i++) {
+                    sorter.add(new Record("stb" + (s * 5 + i) + "|title|provider|2014-04-01|" + (i % 3) + ".00|1:30"));
+                }
+                sorters.add(sorter);
+            }
+            ArrayList<Record> sorted = new ArrayList<>();
+            // Call
+            ExternalSorter.merge(sorters, sorted::add);
+            // Test
+            assertEquals(15, sorted.size());
+            for (int i = 1; i < sorted.size(); i++) {
+                Record previous = sorted.get(i - 1);
+                Record current = sorted.get(i);
+                assertTrue(previous.getRev() <= current.getRev());
+                if (previous.getRev() == current.getRev()) {
+                    // ties keep the order of the sorters and then the order they were added in
+                    assertTrue(Integer.parseInt(previous.getStb().substring(3))
+                            < Integer.parseInt(current.getStb().substring(3)));
+                }
+            }
+        }
+    }
+
+    public void testMergeFlushedSorter() throws Exception {
+        // Setup
+        ArrayList<ExternalSorter> sorters = new ArrayList<>();
+        for (int s = 0; s < 2; s++) {
+            ExternalSorter sorter = new ExternalSorter(new RecordComparator(new String[]{"REV"}), 100);
+            for (int i = 0; i < 5; i++) {
+                sorter.add(new Record("stb" + (s * 5 + i) + "|title|provider|2014-04-01|" + (i % 3) + ".00|1:30"));
+            }
+            sorters.add(sorter);
+        }
+        ArrayList<Record> sorted = new ArrayList<>();
+        // Call
+        sorters.get(0).flush();
+        int buffered = sorters.get(0).getBufferedCount();
+        int runs = sorters.get(0).getRunCount();
+        ExternalSorter.merge(sorters, sorted::add);
+        // Test
+        assertEquals(0, buffered);
+        assertEquals(1, runs);
+        assertEquals(10, sorted.size());
+        for (int i = 1; i < sorted.size(); i++) {
+            Record previous = sorted.get(i - 1);
+            Record current = sorted.get(i);
+            assertTrue(previous.getRev() <= current.getRev());
+            if (previous.getRev() == current.getRev()) {
+                assertTrue(Integer.parseInt(previous.getStb().substring(3))
+                        < Integer.parseInt(current.getStb().substring(3)));
+            }
+        }
+    }
+
+    public void testInvalidField() throws Exception {
+        try {
+            new RecordComparator(new String[]{"NOPE"});
+            fail("NOPE is not a field");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(true);
+        }
+    }
+}
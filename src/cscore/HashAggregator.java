@@ -0,0 +1,310 @@
+package cscore;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Groups records by one or more fields and computes aggregates for each group in a single pass. Groups are found
+ * through an open addressing table of group ids and each aggregate keeps one primitive accumulator per group.
+ * Selected columns are either a grouped field or FIELD:FUNCTION where the function is one of
+ * <pre>
+ * count    the number of records                    any field
+ * sum      the total                                REV, VIEW_TIME
+ * min/max  the smallest or largest value            REV, VIEW_TIME, DATE
+ * collect  the distinct values separated by '|'     any field
+ * </pre>
+ */
+public class HashAggregator {
+    private final String[] groupFields;
+    private final Column[] columns;
+    private final List<Object[]> keys = new ArrayList<>();
+    // group id + 1 hashed on the group key, 0 is an empty slot
+    private int[] table = new int[64];
+
+    /**
+     * @param groupFields the fields to group by
+     * @param select the columns to output
+     * @throws IllegalArgumentException if a grouped field isn't valid or a column isn't a grouped field or a valid
+     * aggregate
+     */
+    public HashAggregator(String[] groupFields, String[] select) {
+        for (String field : groupFields) {
+            // throws for an unknown field
+            RecordComparator.forField(field);
+        }
+        this.groupFields = groupFields;
+        this.columns = new Column[select.length];
+        for (int i = 0; i < select.length; i++) {
+            columns[i] = new Column(select[i]);
+        }
+    }
+
+    /**
+     * Adds a record to its group's aggregates, creating the group if it is new
+     * @param record the record to aggregate
+     */
+    public void add(Record record) {
+        Object[] key = new Object[groupFields.length];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = record.getField(groupFields[i]);
+        }
+        int group = findGroup(key);
+        for (Column column : columns) {
+            column.add(group, record);
+        }
+    }
+
+    /**
+     * Adds the groups of another aggregator over the same groups and columns, used to combine partial aggregates.
+     * Groups that are new to this aggregator are added after its own groups in the order the other saw them.
+     * @param other the partial aggregates to add
+     */
+    public void merge(HashAggregator other) {
+        for (int otherGroup = 0; otherGroup < other.keys.size(); otherGroup++) {
+            int group = findGroup(other.keys.get(otherGroup));
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].merge(group, other.columns[i], otherGroup);
+            }
+        }
+    }
+
+    /**
+     * @return the number of groups
+     */
+    public int getGroupCount() {
+        return keys.size();
+    }
+
+    /**
+     * @return one row per group in the order the groups were first seen, each value is a String or a Number
+     */
+    public List<Object[]> getRows() {
+        List<Object[]> rows = new ArrayList<>(keys.size());
+        for (int group = 0; group < keys.size(); group++) {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                row[i] = columns[i].value(group);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Builds a comparator over output rows
+     * @param order the selected columns to order by, each optionally followed by :desc or :asc
+     * @return a comparator that orders numbers numerically and strings alphabetically
+     * @throws IllegalArgumentException if an order column isn't selected
+     */
+    public Comparator<Object[]> comparator(String[] order) {
+        Comparator<Object[]> combined = (a, b) -> 0;
+        for (String name : order) {
+            String column = RecordComparator.fieldName(name);
+            int index = Arrays.asList(columnNames()).indexOf(column);
+            if (index < 0) {
+                throw new IllegalArgumentException(column + " must be selected to order by it");
+            }
+            Comparator<Object[]> next = (a, b) -> compareValues(a[index], b[index]);
+            combined = combined.thenComparing(RecordComparator.isDescending(name) ? next.reversed() : next);
+        }
+        return combined;
+    }
+
+    /**
+     * @param row a row from <code>getRows</code>
+     * @return the row's values formatted and separated by commas
+     */
+    public String format(Object[] row) {
+        String value = "";
+        for (int i = 0; i < columns.length; i++) {
+            value += columns[i].format(row[i]);
+            value += (i == columns.length - 1 ? "" : ",");
+        }
+        return value;
+    }
+
+    private String[] columnNames() {
+        String[] names = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].name;
+        }
+        return names;
+    }
+
+    private static int compareValues(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    /**
+     * Finds the id of the group with the key, adding a new group if there isn't one
+     */
+    private int findGroup(Object[] key) {
+        int mask = table.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int group = table[slot] - 1;
+            if (group < 0) {
+                group = keys.size();
+                keys.add(key);
+                table[slot] = group + 1;
+                for (Column column : columns) {
+                    column.grow(keys.size());
+                }
+                if (keys.size() * 2 > table.length) {
+                    rehash();
+                }
+                return group;
+            }
+            if (Arrays.equals(keys.get(group), key)) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int group = 0; group < keys.size(); group++) {
+            int slot = hash(keys.get(group)) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = group + 1;
+        }
+    }
+
+    private static int hash(Object[] key) {
+        int h = Arrays.hashCode(key) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * One output column, either a grouped field or an aggregate with an accumulator per group
+     */
+    private class Column {
+        final String name;
+        final String field;
+        final String function;
+        final int groupIndex;
+        double[] values = new double[16];
+        List<LinkedHashSet<String>> collected;
+
+        Column(String name) {
+            this.name = name;
+            String[] parts = name.split(":");
+            this.field = parts[0];
+            this.function = parts.length > 1 ? parts[1] : null;
+            this.groupIndex = Arrays.asList(groupFields).indexOf(field);
+            // throws if the field name is unknown
+            RecordComparator.forField(field);
+
+            if (function == null) {
+                if (groupIndex < 0) {
+                    throw new IllegalArgumentException(field + " must be grouped or aggregated");
+                }
+            }
+            else if (function.equals("collect")) {
+                collected = new ArrayList<>();
+            }
+            else if (function.equals("sum")) {
+                if (!field.equals("REV") && !field.equals("VIEW_TIME")) {
+                    throw new IllegalArgumentException("Only REV and VIEW_TIME can be summed");
+                }
+            }
+            else if (function.equals("min") || function.equals("max")) {
+                if (!field.equals("REV") && !field.equals("VIEW_TIME") && !field.equals("DATE")) {
+                    throw new IllegalArgumentException("Only REV, VIEW_TIME and DATE have a min and max");
+                }
+            }
+            else if (!function.equals("count")) {
+                throw new IllegalArgumentException(function + " is not a valid aggregate");
+            }
+        }
+
+        void grow(int groups) {
+            if (groups > values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            int group = groups - 1;
+            if ("min".equals(function)) {
+                values[group] = Double.POSITIVE_INFINITY;
+            }
+            else if ("max".equals(function)) {
+                values[group] = Double.NEGATIVE_INFINITY;
+            }
+            if (collected != null) {
+                collected.add(new LinkedHashSet<>());
+            }
+        }
+
+        void add(int group, Record record) {
+            if (function == null) {
+                return;
+            }
+            switch (function) {
+                case "count": values[group]++; break;
+                case "sum": values[group] += number(record); break;
+                case "min": values[group] = Math.min(values[group], number(record)); break;
+                case "max": values[group] = Math.max(values[group], number(record)); break;
+                case "collect": collected.get(group).add(String.valueOf(record.getField(field))); break;
+                default: break;
+            }
+        }
+
+        void merge(int group, Column other, int otherGroup) {
+            if (function == null) {
+                return;
+            }
+            switch (function) {
+                case "count":
+                case "sum": values[group] += other.values[otherGroup]; break;
+                case "min": values[group] = Math.min(values[group], other.values[otherGroup]); break;
+                case "max": values[group] = Math.max(values[group], other.values[otherGroup]); break;
+                case "collect": collected.get(group).addAll(other.collected.get(otherGroup)); break;
+                default: break;
+            }
+        }
+
+        private double number(Record record) {
+            switch (field) {
+                case "REV": return record.getRev();
+                case "VIEW_TIME": return record.getViewMinutes();
+                default: return record.getEpochDay();
+            }
+        }
+
+        Object value(int group) {
+            if (function == null) {
+                return keys.get(group)[groupIndex];
+            }
+            switch (function) {
+                case "count": return (long) values[group];
+                case "collect": return String.join("|", collected.get(group));
+                default: return field.equals("REV") ? (Object) values[group] : (Object) (long) values[group];
+            }
+        }
+
+        String format(Object value) {
+            if (function == null || function.equals("count") || function.equals("collect")) {
+                return Objects.toString(value);
+            }
+            if (field.equals("VIEW_TIME")) {
+                long minutes = (Long) value;
+                return minutes / 60 + ":" + String.format("%02d", minutes % 60);
+            }
+            if (field.equals("DATE")) {
+                return LocalDate.ofEpochDay((Long) value).toString();
+            }
+            return value.toString();
+        }
+    }
+}
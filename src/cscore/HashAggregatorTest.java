@@ -0,0 +1,103 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.util.List;
+
+/**
+ * Tests for <code>HashAggregator</code>
+ */
+public class HashAggregatorTest extends TestCase {
+
+    private HashAggregator aggregate(String[] group, String[] select) throws Exception {
+        HashAggregator aggregator = new HashAggregator(group, select);
+        aggregator.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        aggregator.add(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        aggregator.add(new Record("stb1|unbreakable|buena vista|2014-04-03|6.00|2:05"));
+        aggregator.add(new Record("stb3|the matrix|warner bros|2014-04-02|4.00|1:05"));
+        return aggregator;
+    }
+
+    public void testSumCount() throws Exception {
+        // Call
+        HashAggregator aggregator = aggregate(new String[]{"PROVIDER"},
+                new String[]{"PROVIDER", "REV:sum", "VIEW_TIME:sum", "STB:count", "STB:collect"});
+        List<Object[]> rows = aggregator.getRows();
+        // Test
+        assertEquals(2, aggregator.getGroupCount());
+        assertEquals("warner bros,16.0,5:20,3,stb1|stb2|stb3", aggregator.format(rows.get(0)));
+        assertEquals("buena vista,6.0,2:05,1,stb1", aggregator.format(rows.get(1)));
+    }
+
+    public void testMerge() throws Exception {
+        // Setup
+        String[] select = {"PROVIDER", "REV:sum", "REV:max", "STB:count", "STB:collect"};
+        HashAggregator aggregator = aggregate(new String[]{"PROVIDER"}, select);
+        HashAggregator other = new HashAggregator(new String[]{"PROVIDER"}, select);
+        other.add(new Record("stb4|the hobbit|hbo|2014-04-01|2.00|1:30"));
+        other.add(new Record("stb1|the hobbit|warner bros|2014-04-04|9.00|1:30"));
+        // Call
+        aggregator.merge(other);
+        List<Object[]> rows = aggregator.getRows();
+        // Test
+        assertEquals(3, aggregator.getGroupCount());
+        assertEquals("warner bros,25.0,9.0,4,stb1|stb2|stb3", aggregator.format(rows.get(0)));
+        assertEquals("buena vista,6.0,6.0,1,stb1", aggregator.format(rows.get(1)));
+        assertEquals("hbo,2.0,2.0,1,stb4", aggregator.format(rows.get(2)));
+    }
+
+    public void testOrder() throws Exception {
+        // Setup
+        HashAggregator aggregator = aggregate(new String[]{"TITLE"}, new String[]{"TITLE", "REV:sum", "DATE:min"});
+        List<Object[]> rows = aggregator.getRows();
+        // Call
+        rows.sort(aggregator.comparator(new String[]{"REV:sum", "TITLE"}));
+        // Test
+        assertEquals("unbreakable,6.0,2014-04-03", aggregator.format(rows.get(0)));
+        assertEquals("the hobbit,8.0,2014-04-02", aggregator.format(rows.get(1)));
+        assertEquals("the matrix,8.0,2014-04-01", aggregator.format(rows.get(2)));
+    }
+
+    public void testOrderDescending() throws Exception {
+        // Setup
+        HashAggregator aggregator = aggregate(new String[]{"TITLE"}, new String[]{"TITLE", "REV:sum", "DATE:min"});
+        List<Object[]> rows = aggregator.getRows();
+        // Call
+        rows.sort(aggregator.comparator(new String[]{"REV:sum:desc", "TITLE:asc"}));
+        // Test
+        assertEquals("the hobbit,8.0,2014-04-02", aggregator.format(rows.get(0)));
+        assertEquals("the matrix,8.0,2014-04-01", aggregator.format(rows.get(1)));
+        assertEquals("unbreakable,6.0,2014-04-03", aggregator.format(rows.get(2)));
+    }
+
+    public void testManyGroups() throws Exception {
+        // Setup
+        HashAggregator aggregator = new HashAggregator(new String[]{"STB"}, new String[]{"STB", "REV:max"});
+        // Call
+        for (int i = 0; i < 1000; i++) {
+            aggregator.add(new Record("stb" + (i % 300) + "|title|provider|2014-04-01|" + i + ".00|1:30"));
+        }
+        // Test
+        assertEquals(300, aggregator.getGroupCount());
+        assertEquals("stb0,900.0", aggregator.format(aggregator.getRows().get(0)));
+    }
+
+    public void testInvalidColumn() throws Exception {
+        try {
+            new HashAggregator(new String[]{"PROVIDER"}, new String[]{"TITLE"});
+            fail("TITLE is not grouped");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(true);
+        }
+    }
+
+    public void testInvalidGroupField() throws Exception {
+        try {
+            new HashAggregator(new String[]{"STUDIO"}, new String[]{"STB:count"});
+            fail("STUDIO is not a field");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("STUDIO is not a valid field", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package cscore;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Streams the records in an exported json array to a <code>RecordSink</code> while the file is being parsed. Only
+ * the fields of the current object are held in memory so the size of the file doesn't matter.
+ */
+public class JsonRecordStream implements ContentHandler {
+    private final RecordSink sink;
+    private String stb, title, provider, date, viewTime;
+    private double rev;
+    private String field;
+    private int depth = 0;
+    private Exception error;
+
+    private JsonRecordStream(RecordSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Parses an exported json file and passes each record to the sink until the sink returns false
+     * @param filename the json file to read
+     * @param sink receives each record
+     * @throws Exception if the file cannot be parsed or the sink fails
+     */
+    public static void stream(String filename, RecordSink sink) throws Exception {
+        Reader reader = new FileReader(filename);
+        JsonRecordStream handler = new JsonRecordStream(sink);
+        try {
+            new JSONParser().parse(reader, handler);
+        }
+        finally {
+            reader.close();
+        }
+        if (handler.error != null) {
+            throw handler.error;
+        }
+    }
+
+    @Override
+    public void startJSON() {
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        depth++;
+        stb = title = provider = date = viewTime = null;
+        rev = 0;
+        return true;
+    }
+
+    @Override
+    public boolean endObject() throws ParseException, IOException {
+        depth--;
+        try {
+            return sink.accept(new Record(stb, title, provider, date, rev, viewTime));
+        }
+        catch (Exception e) {
+            // stop parsing and rethrow once the parser returns
+            error = e;
+            return false;
+        }
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        field = key;
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        field = null;
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        if (depth == 0 || field == null) {
+            return true;
+        }
+        switch (field) {
+            case "STB": stb = (String) value; break;
+            case "TITLE": title = (String) value; break;
+            case "PROVIDER": provider = (String) value; break;
+            case "DATE": date = (String) value; break;
+            case "REV": rev = ((Number) value).doubleValue(); break;
+            case "VIEW_TIME": viewTime = (String) value; break;
+            default: break;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * Tests for <code>JsonRecordStream</code>
+ */
+public class JsonRecordStreamTest extends TestCase {
+    private static final String NAME = "TempJsonStream";
+
+    private void createExport() throws Exception {
+        Records records = new Records();
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.addRecord(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        records.addRecord(new Record("stb3|unbreakable|buena vista|2014-04-03|6.00|2:05"));
+        records.exportToJson(NAME);
+    }
+
+    public void testStream() throws Exception {
+        // Setup
+        createExport();
+        ArrayList<Record> read = new ArrayList<>();
+        // Call
+        JsonRecordStream.stream(NAME, record -> read.add(record));
+        // Test
+        assertEquals(3, read.size());
+        for (Record record : read) {
+            if (record.getStb().equals("stb2")) {
+                assertEquals("the hobbit", record.getTitle());
+                assertEquals("2014-04-02", record.getDate());
+                assertEquals(8.0, record.getRev());
+                assertEquals("2:45", record.getViewTime());
+            }
+        }
+        // Cleanup
+        new File(NAME).delete();
+        new File(NAME + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testStreamStops() throws Exception {
+        // Setup
+        createExport();
+        ArrayList<Record> read = new ArrayList<>();
+        // Call
+        JsonRecordStream.stream(NAME, record -> {
+            read.add(record);
+            return read.size() < 2;
+        });
+        // Test
+        assertEquals(2, read.size());
+        // Cleanup
+        new File(NAME).delete();
+        new File(NAME + SegmentStats.SUFFIX).delete();
+    }
+}
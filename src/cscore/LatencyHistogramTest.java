@@ -0,0 +1,52 @@
+package cscore;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>LatencyHistogram</code> and <code>Metrics</code>
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBucketsCoverEveryValue() throws Exception {
+        // Test
+        long previous = -1;
+        for (int bucket = 0; bucket < 200; bucket++) {
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(previous + 1));
+            assertEquals(bucket, LatencyHistogram.bucket(upper));
+            // each bucket is within 1/16th of its values
+            assertTrue(upper - previous <= Math.max(1, upper / 16 + 1));
+            previous = upper;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucket(Long.MAX_VALUE)));
+    }
+
+    public void testPercentiles() throws Exception {
+        // Setup
+        LatencyHistogram histogram = new LatencyHistogram();
+        // Call
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        // Test
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500.0, histogram.getMean());
+        assertTrue(Math.abs(histogram.getPercentile(50) - 500000) <= 500000 / 16);
+        assertTrue(Math.abs(histogram.getPercentile(99) - 990000) <= 990000 / 16);
+        assertTrue(histogram.getPercentile(100) >= 1000000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    public void testMetricsSummary() throws Exception {
+        // Setup
+        Metrics.increment(Metrics.Counter.LINES_READ);
+        // Call
+        String summary = Metrics.get().getSummary();
+        // Test
+        assertTrue(summary.contains("LINES_READ"));
+        assertEquals(Metrics.ENABLED ? 1 : 0, Metrics.count(Metrics.Counter.LINES_READ) > 0 ? 1 : 0);
+        assertEquals(Metrics.Timer.values().length * 5, Metrics.get().getLatencies().size());
+    }
+}
@@ -0,0 +1,237 @@
+package cscore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows a log file that is being appended to and imports each new complete line into <code>Records</code>, the
+ * same as <code>importFromFile</code> would. The byte offset of the first unread line is saved to an offset file
+ * after every poll so a restarted tailer carries on where the last one stopped instead of importing the whole file
+ * again. A line without its line break yet is left for the next poll.
+ *
+ * The file is kept open between polls. If it is rotated, renamed away and replaced with a new file, the rest of
+ * the old file is read before the tailer moves to the new one. If it is truncated it is read again from the start.
+ * Records only reach disk when they are exported, so enable the write ahead log on <code>Records</code> to keep the
+ * lines that were read before a crash.
+ */
+public class LogTailer implements Closeable {
+    public static final String OFFSET_SUFFIX = ".offset";
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private final Records records;
+    private final Path path;
+    private final Path offsetFile;
+    private FileChannel channel = null;
+    private Object fileKey = null;
+    private long offset = 0;
+    private ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates a tailer that saves its offset next to the log
+     * @param records where the records are imported
+     * @param filename the log to follow
+     * @throws IOException if the saved offset cannot be read
+     */
+    public LogTailer(Records records, String filename) throws IOException {
+        this(records, filename, filename + OFFSET_SUFFIX);
+    }
+
+    /**
+     * @param records where the records are imported
+     * @param filename the log to follow
+     * @param offsetFile where the offset is saved
+     * @throws IOException if the saved offset cannot be read
+     */
+    public LogTailer(Records records, String filename, String offsetFile) throws IOException {
+        this.records = records;
+        this.path = Paths.get(filename);
+        this.offsetFile = Paths.get(offsetFile);
+        if (Files.exists(this.offsetFile)) {
+            List<String> saved = Files.readAllLines(this.offsetFile, StandardCharsets.UTF_8);
+            // the offset only applies to the file it was saved for, a rotated file is read from the start
+            if (saved.size() == 2 && open() && saved.get(1).equals(String.valueOf(fileKey))) {
+                offset = Long.parseLong(saved.get(0));
+            }
+        }
+    }
+
+    /**
+     * @return the offset of the first line that hasn't been imported
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Opens the log if it isn't open yet
+     * @return false if there is no log yet
+     */
+    private boolean open() throws IOException {
+        if (channel != null) {
+            return true;
+        }
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+        fileKey = key(path);
+        offset = 0;
+        return true;
+    }
+
+    /**
+     * @return something that identifies the file, the inode where there is one otherwise its creation time
+     */
+    private static Object key(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+    }
+
+    /**
+     * Imports every complete line added since the last poll and saves the new offset
+     * @return the number of lines read
+     * @throws IOException if the log cannot be read or the offset cannot be saved
+     */
+    public int poll() throws IOException {
+        if (!open()) {
+            return 0;
+        }
+        int lines = 0;
+        if (channel.size() < offset) {
+            // truncated in place, everything in it is new
+            offset = 0;
+        }
+        lines += readToEnd();
+
+        Object current;
+        try {
+            current = key(path);
+        }
+        catch (NoSuchFileException e) {
+            // rotated away and the new file isn't there yet
+            current = null;
+        }
+        if (current != null && !Objects.equals(current, fileKey)) {
+            // rotated, the rest of the old file has been read so move to the new one
+            channel.close();
+            channel = null;
+            open();
+            lines += readToEnd();
+        }
+        saveOffset();
+        return lines;
+    }
+
+    /**
+     * Imports the complete lines between the offset and the end of the open file
+     */
+    private int readToEnd() throws IOException {
+        RecordParser parser = RecordParser.get();
+        int lines = 0;
+        while (offset < channel.size()) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            int limit = buffer.position();
+            int start = 0;
+            for (int end = 0; end < limit; end++) {
+                if (buffer.get(end) != '\n') {
+                    continue;
+                }
+                int lineEnd = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+                lines++;
+                Metrics.increment(Metrics.Counter.LINES_READ);
+                try {
+                    records.importRecord(parser.parse(buffer, start, lineEnd));
+                }
+                catch (Exception e) {
+                    Metrics.increment(Metrics.Counter.PARSE_FAILURES);
+                    System.out.println("Error: Record could not be parsed '"
+                            + RecordParser.decode(buffer, start, lineEnd) + "'");
+                }
+                start = end + 1;
+            }
+            Metrics.add(Metrics.Counter.BYTES_READ, start);
+            offset += start;
+            if (start == 0) {
+                if (limit < buffer.capacity()) {
+                    // only part of a line has been written so far
+                    break;
+                }
+                // a line longer than the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            }
+        }
+        return lines;
+    }
+
+    private void saveOffset() throws IOException {
+        Path temp = Paths.get(offsetFile + ".tmp");
+        Files.write(temp, (offset + "\n" + fileKey + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Polls the log until <code>stop</code> is called. A watch service on the log's directory wakes the tailer as
+     * soon as the log changes, and it also polls every <code>pollMillis</code> in case the platform's watch
+     * service misses or delays the event.
+     * @param pollMillis the longest time between polls
+     * @throws IOException if the log cannot be read
+     * @throws InterruptedException if the thread is interrupted
+     */
+    public void follow(long pollMillis) throws IOException, InterruptedException {
+        Path directory = path.toAbsolutePath().getParent();
+        try (WatchService watcher = directory.getFileSystem().newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!stopped) {
+                poll();
+                WatchKey key = watcher.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+            }
+        }
+        catch (ClosedWatchServiceException e) {
+            // closed while stopping
+        }
+    }
+
+    /**
+     * Makes <code>follow</code> return after its current poll
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.io.FileWriter;
+
+/**
+ * Tests for <code>LogTailer</code>
+ */
+public class LogTailerTest extends TestCase {
+    private static final String NAME = "TempTail.log";
+
+    private void append(String filename, String text) throws Exception {
+        FileWriter writer = new FileWriter(filename, true);
+        writer.write(text);
+        writer.close();
+    }
+
+    private void deleteFiles() {
+        new File(NAME).delete();
+        new File(NAME + ".1").delete();
+        new File(NAME + LogTailer.OFFSET_SUFFIX).delete();
+    }
+
+    public void testOnlyCompleteLines() throws Exception {
+        // Setup
+        deleteFiles();
+        Records records = new Records();
+        LogTailer tailer = new LogTailer(records, NAME);
+        // Call
+        int none = tailer.poll();
+        append(NAME, "stb1|the matrix|warner bros|2014-04-01|4.00|1:30\nstb2|the hob");
+        int first = tailer.poll();
+        append(NAME, "bit|hbo|2014-04-02|8.00|2:45\n");
+        int second = tailer.poll();
+        // Test
+        assertEquals(0, none);
+        assertEquals(1, first);
+        assertEquals(1, second);
+        assertEquals(2, records.getCount());
+        assertEquals(new File(NAME).length(), tailer.getOffset());
+        // Cleanup
+        tailer.close();
+        deleteFiles();
+    }
+
+    public void testResumesFromSavedOffset() throws Exception {
+        // Setup
+        deleteFiles();
+        append(NAME, "stb1|the matrix|warner bros|2014-04-01|4.00|1:30\n");
+        LogTailer tailer = new LogTailer(new Records(), NAME);
+        tailer.poll();
+        tailer.close();
+        append(NAME, "stb2|the hobbit|hbo|2014-04-02|8.00|2:45\n");
+        Records restarted = new Records();
+        // Call
+        LogTailer resumed = new LogTailer(restarted, NAME);
+        int lines = resumed.poll();
+        // Test
+        assertEquals(1, lines);
+        assertEquals(1, restarted.getCount());
+        // Cleanup
+        resumed.close();
+        deleteFiles();
+    }
+
+    public void testRotationAndTruncation() throws Exception {
+        // Setup
+        deleteFiles();
+        Records records = new Records();
+        append(NAME, "stb1|the matrix|warner bros|2014-04-01|4.00|1:30\n");
+        LogTailer tailer = new LogTailer(records, NAME);
+        tailer.poll();
+        // Call
+        append(NAME, "stb2|the hobbit|hbo|2014-04-02|8.00|2:45\n");
+        assertTrue(new File(NAME).renameTo(new File(NAME + ".1")));
+        append(NAME, "stb3|unbreakable|buena vista|2014-04-03|6.00|2:05\n");
+        int rotated = tailer.poll();
+        new FileWriter(NAME).close();
+        append(NAME, "stb4|up|pixar|2014-04-04|3.00|1:35\n");
+        int truncated = tailer.poll();
+        // Test
+        assertEquals(2, rotated);
+        assertEquals(1, truncated);
+        assertEquals(4, records.getCount());
+        // Cleanup
+        tailer.close();
+        deleteFiles();
+    }
+
+    public void testBadLine() throws Exception {
+        // Setup
+        deleteFiles();
+        Records records = new Records();
+        append(NAME, "bad line\r\nstb1|the matrix|warner bros|2014-04-01|4.00|1:30\r\n");
+        LogTailer tailer = new LogTailer(records, NAME);
+        // Call
+        int lines = tailer.poll();
+        // Test
+        assertEquals(2, lines);
+        assertEquals(1, records.getCount());
+        // Cleanup
+        tailer.close();
+        deleteFiles();
+    }
+}
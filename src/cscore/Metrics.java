@@ -0,0 +1,167 @@
+package cscore;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency timers for imports, exports and queries. Metrics are off unless the JVM is started with
+ * -Dcscore.metrics=true. The flag is a static final so when it is off every call is a constant false branch that
+ * the JIT removes. When it is on the metrics are registered with JMX as cscore:type=Metrics and a summary is
+ * printed to stderr when the JVM exits.
+ */
+public final class Metrics implements MetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("cscore.metrics");
+
+    /**
+     * The things that are counted
+     */
+    public enum Counter {
+        LINES_READ, PARSE_FAILURES, DUPLICATES_OVERWRITTEN, RECORDS_EXPORTED, FILES_REWRITTEN, BYTES_READ,
+        BYTES_WRITTEN, QUERIES, RECORDS_SCANNED
+    }
+
+    /**
+     * The phases that are timed
+     */
+    public enum Timer {
+        IMPORT, EXPORT, UPDATE, QUERY
+    }
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+    private static final LatencyHistogram[] TIMERS = new LatencyHistogram[Timer.values().length];
+
+    static {
+        for (int i = 0; i < COUNTERS.length; i++) {
+            COUNTERS[i] = new LongAdder();
+        }
+        for (int i = 0; i < TIMERS.length; i++) {
+            TIMERS[i] = new LatencyHistogram();
+        }
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                        new ObjectName("cscore:type=Metrics"));
+            }
+            catch (Exception e) {
+                System.out.println("Error: could not register metrics with JMX");
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(INSTANCE.getSummary()),
+                    "metrics-summary"));
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the metrics, for example to read them without JMX
+     */
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Adds one to a counter
+     */
+    public static void increment(Counter counter) {
+        if (ENABLED) {
+            COUNTERS[counter.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Adds an amount to a counter
+     */
+    public static void add(Counter counter, long amount) {
+        if (ENABLED) {
+            COUNTERS[counter.ordinal()].add(amount);
+        }
+    }
+
+    /**
+     * @return the time to pass to <code>stop</code>, or 0 without reading the clock when metrics are off
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since <code>start</code>
+     * @param timer the phase being timed
+     * @param start the value <code>start</code> returned
+     */
+    public static void stop(Timer timer, long start) {
+        if (ENABLED) {
+            TIMERS[timer.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the current value of a counter
+     */
+    public static long count(Counter counter) {
+        return COUNTERS[counter.ordinal()].sum();
+    }
+
+    /**
+     * @return the latencies recorded for a phase
+     */
+    public static LatencyHistogram timer(Timer timer) {
+        return TIMERS[timer.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        for (Counter counter : Counter.values()) {
+            counters.put(counter.name(), count(counter));
+        }
+        return counters;
+    }
+
+    @Override
+    public Map<String, Double> getLatencies() {
+        Map<String, Double> latencies = new LinkedHashMap<>();
+        for (Timer timer : Timer.values()) {
+            LatencyHistogram histogram = timer(timer);
+            latencies.put(timer.name() + ".count", (double) histogram.getCount());
+            latencies.put(timer.name() + ".mean", histogram.getMean() / 1e6);
+            latencies.put(timer.name() + ".p50", histogram.getPercentile(50) / 1e6);
+            latencies.put(timer.name() + ".p99", histogram.getPercentile(99) / 1e6);
+            latencies.put(timer.name() + ".max", histogram.getPercentile(100) / 1e6);
+        }
+        return latencies;
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder("Metrics:\n");
+        for (Map.Entry<String, Long> counter : getCounters().entrySet()) {
+            summary.append(String.format("  %-24s %d%n", counter.getKey(), counter.getValue()));
+        }
+        for (Timer timer : Timer.values()) {
+            LatencyHistogram histogram = timer(timer);
+            if (histogram.getCount() > 0) {
+                summary.append(String.format("  %-24s count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms%n",
+                        timer.name(), histogram.getCount(), histogram.getMean() / 1e6,
+                        histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6,
+                        histogram.getPercentile(100) / 1e6));
+            }
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : COUNTERS) {
+            counter.reset();
+        }
+        for (LatencyHistogram timer : TIMERS) {
+            timer.reset();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cscore;
+
+import java.util.Map;
+
+/**
+ * The JMX view of <code>Metrics</code>
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return the value of every counter by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return the count, mean, p50, p99 and max of every timer in milliseconds, keyed by timer and statistic
+     */
+    Map<String, Double> getLatencies();
+
+    /**
+     * @return the summary that is printed at the end of a run
+     */
+    String getSummary();
+
+    /**
+     * Clears every counter and timer
+     */
+    void reset();
+}
@@ -0,0 +1,691 @@
+package cscore;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Handles queries from command index arguments.
+ * Required: Select '-s FIELDNAME'. can have multiple fields separated by commas
+ * Optional: Order By '-o FIELDNAME' can handle multiple order bys separated by commas, FIELDNAME:desc orders from
+ *           the largest value to the smallest
+ * Optional: Filter '-f EXPRESSION' filters the result to only contain elements that match the expression, for example
+ *           'DATE=2014-04-01..2014-04-03 AND REV>5 OR PROVIDER IN (hbo,warner bros)', see RecordFilter
+ * Optional: Group By '-g FIELDNAME' can group by multiple fields separated by commas, the select can then contain
+ *           the grouped fields and aggregates such as REV:sum, VIEW_TIME:sum, STB:count or STB:collect
+ * Optional: Limit '-l N' only prints the first N rows, with an order by only the best N rows are kept while reading
+ * Optional: Memory '-m ROWS' the number of rows an order by sorts in memory before spilling runs to disk
+ * Optional: Cache '-c FILE' keeps query results in the file and returns them again until the data changes
+ * Reads the records from the binary segment data.seg if it exists, otherwise streams them from data.json, along with
+ * every export listed in data.manifest, scanning the files in parallel. Without an order
+ * rows are printed in the order they are stored.
+ * Server: 'Query -d PORT' keeps the data in memory and answers one query per line on a local socket, or on stdin when
+ *         PORT is '-', see QueryServer
+ */
+public class Query {
+    protected static final String JSONFILE = "data.json";
+    protected static final String SEGMENTFILE = "data.seg";
+    private static final int READ_AHEAD_ROWS = 1024;
+    // marks the end of a part in its read ahead queue, compared by identity
+    private static final String END_OF_PART = new String("");
+    protected String[] select = {};
+    protected String[] order = {};
+    protected RecordFilter filter = null;
+    protected String[] group = {};
+    protected int sortBudget = 100000;
+    protected int limit = -1;
+    protected String cacheFile = null;
+    private List<String> rows = null;
+    private List<String> files = null;
+    protected PrintStream out = System.out;
+
+    public Query(String[] args){
+        execute(args);
+    }
+
+    /**
+     * Creates a query without running it, used when the options and output are set by a subclass
+     */
+    protected Query() {
+    }
+
+    /**
+     * Parses the inputted arguments and adds sets the corresponding arrays to the argument values.
+     *
+     * @param args
+     *        The arguments from the command index
+     * @Throws IllegalArgumentException if any of the arguments are invalid
+     */
+    protected void optionsParse(String[] args ) {
+        if(args.length == 0) {
+            throw new IllegalArgumentException("Missing command index arguments");
+        }
+
+        for(int i = 0; i < args.length; i=i+2) {
+            // Checks to see if we have an option flag followed
+            if(args[i].equals("") || args[i].charAt(0) != '-'  || i+1 == args.length) {
+                throw new IllegalArgumentException(args[i] + " is missing a value");
+            }
+            else if(args[i].equals("-s")){
+                // Set the Select parameters
+                this.select = fields(args[i+1]);
+            }
+            else if(args[i].equals("-o")){
+                // Set the Order parameters
+                this.order = fields(args[i+1]);
+            }
+            else if(args[i].equals("-f")){
+                // Compile the Filter expression
+                this.filter = RecordFilter.compile(args[i+1]);
+            }
+            else if(args[i].equals("-g")){
+                // Set the Group By parameters
+                this.group = fields(args[i+1]);
+            }
+            else if(args[i].equals("-l")){
+                // Set the maximum number of rows to print
+                this.limit = Integer.parseInt(args[i+1]);
+                if (this.limit < 0) {
+                    throw new IllegalArgumentException(args[i] + " must not be negative");
+                }
+            }
+            else if(args[i].equals("-m")){
+                // Set the number of rows to sort in memory
+                this.sortBudget = Integer.parseInt(args[i+1]);
+            }
+            else if(args[i].equals("-c")){
+                // Set the file the results are cached in
+                this.cacheFile = args[i+1];
+            }
+            else {
+                throw new IllegalArgumentException(args[i] + " is an invalid argument");
+            }
+        }
+
+    }
+
+    /**
+     * @return the comma separated fields of an option without the spaces around them
+     */
+    private static String[] fields(String value) {
+        String[] fields = value.split(",");
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+        return fields;
+    }
+
+    protected void execute(String[] args){
+        // set the parameters
+        optionsParse(args);
+
+        try {
+            if (this.cacheFile != null) {
+                QueryCache cache = new QueryCache(1000, 64L * 1024 * 1024);
+                cache.load(this.cacheFile);
+                importRecords(cache);
+                cache.save(this.cacheFile);
+            }
+            else {
+                importRecords();
+            }
+        }
+        catch (Exception e) {
+            throw new IllegalStateException("Could not import records", e);
+        }
+
+    }
+
+    /**
+     * @return the options that change the result, built from the parsed options so the same query always has the
+     *         same key
+     */
+    protected String cacheKey() {
+        return "s=" + String.join(",", this.select) + "\no=" + String.join(",", this.order)
+                + "\ng=" + String.join(",", this.group) + "\nf=" + (this.filter == null ? "" : this.filter)
+                + "\nl=" + this.limit;
+    }
+
+    /**
+     * Prints the cached result of the query if the data hasn't changed since it was cached, otherwise runs the
+     * query and caches its result
+     * @param cache the cached results
+     * @throws Exception if the records cannot be read
+     */
+    public void importRecords(QueryCache cache) throws Exception {
+        String key = cacheKey();
+        // taken before reading so a change made while the query runs makes the result stale
+        String fingerprint = fingerprint();
+        List<String> cached = cache.get(key, fingerprint);
+        if (cached != null) {
+            for (String row : cached) {
+                this.out.println(row);
+            }
+            return;
+        }
+
+        this.rows = new ArrayList<>();
+        try {
+            importRecords();
+            cache.put(key, fingerprint, this.rows);
+        }
+        finally {
+            this.rows = null;
+        }
+    }
+
+    /**
+     * @return the fingerprint of the data the query reads, see QueryCache
+     */
+    protected String fingerprint() {
+        List<String> files = new ArrayList<>(dataFiles());
+        files.add(SegmentManifest.FILE);
+        return QueryCache.fingerprint(files.toArray(new String[0]));
+    }
+
+    /**
+     * @return the files holding the data, found once per query
+     */
+    protected List<String> dataFiles() {
+        if (this.files == null) {
+            this.files = discoverFiles();
+        }
+        return this.files;
+    }
+
+    /**
+     * @return data.seg if it exists and otherwise data.json, followed by every other export in the manifest
+     */
+    public static List<String> discoverFiles() {
+        List<String> files = SegmentManifest.read();
+        String defaultFile = new File(SEGMENTFILE).exists() ? SEGMENTFILE : JSONFILE;
+        // the default file is read even if the manifest doesn't list it, unless there is nothing else to read
+        if (!files.contains(defaultFile) && (files.isEmpty() || new File(defaultFile).exists())) {
+            files.add(0, defaultFile);
+        }
+        return files;
+    }
+
+    /**
+     * @return the number of parts the data is split into, each part can be scanned on its own
+     */
+    protected int partitions() {
+        return dataFiles().size();
+    }
+
+    /**
+     * Passes the records of one part to the sink, see <code>scanFile</code>
+     * @param partition the part to read
+     * @param sink receives each record, returns false to stop reading
+     * @return false if the sink stopped the scan
+     * @throws Exception if the records cannot be read
+     */
+    protected boolean scanPartition(int partition, RecordSink sink) throws Exception {
+        if (Metrics.ENABLED) {
+            RecordSink counted = sink;
+            sink = record -> {
+                Metrics.increment(Metrics.Counter.RECORDS_SCANNED);
+                return counted.accept(record);
+            };
+        }
+        return scanFile(dataFiles().get(partition), sink);
+    }
+
+    /**
+     * Computes a partial result from one part of the data
+     */
+    private interface PartialScan<T> {
+        T scan(int partition) throws Exception;
+    }
+
+    /**
+     * Combines a partial result into the final result, returns false once no more are needed
+     */
+    private interface PartialMerge<T> {
+        boolean merge(T partial) throws Exception;
+    }
+
+    /**
+     * Reads one part of the data ahead of the printing into a bounded queue, so the rows of the parts that are not
+     * being printed yet hold at most <code>READ_AHEAD_ROWS</code> rows each
+     */
+    private class ReadAhead implements Runnable {
+        final int partition;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final ArrayBlockingQueue<String> rows = new ArrayBlockingQueue<>(READ_AHEAD_ROWS);
+        final AtomicBoolean stopped;
+        volatile Exception failure = null;
+
+        ReadAhead(int partition, AtomicBoolean stopped) {
+            this.partition = partition;
+            this.stopped = stopped;
+        }
+
+        @Override
+        public void run() {
+            // the printing thread reads the part itself if it gets to it before this starts
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int[] matched = {0};
+                scanPartition(partition, record -> {
+                    if (matches(record)) {
+                        if (!put(project(record))) {
+                            return false;
+                        }
+                        matched[0]++;
+                    }
+                    return limit < 0 || matched[0] < limit;
+                });
+            }
+            catch (Exception e) {
+                failure = e;
+            }
+            put(END_OF_PART);
+        }
+
+        /**
+         * Waits for room in the queue, gives up once the printing has stopped
+         */
+        private boolean put(String row) {
+            try {
+                while (!rows.offer(row, 10, TimeUnit.MILLISECONDS)) {
+                    if (stopped.get()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Prints the matching rows of every part in the order of the parts as soon as they are read. The part being
+     * printed is streamed straight to the output while the next parts are read ahead in parallel on the common fork
+     * join pool, each into a bounded queue, so memory stays bounded however large the parts are.
+     * @throws Exception if a part cannot be read
+     */
+    private void printInOrder() throws Exception {
+        if (this.limit == 0) {
+            return;
+        }
+        int partitions = partitions();
+        int window = Math.max(2, ForkJoinPool.commonPool().getParallelism() * 2);
+        AtomicBoolean stopped = new AtomicBoolean();
+        ArrayDeque<ReadAhead> ahead = new ArrayDeque<>();
+        int[] printed = {0};
+        int next = 1;
+        try {
+            for (int partition = 0; partition < partitions; partition++) {
+                while (next < partitions && next <= partition + window) {
+                    ReadAhead task = new ReadAhead(next++, stopped);
+                    ahead.add(task);
+                    ForkJoinPool.commonPool().execute(task);
+                }
+                ReadAhead task = partition == 0 ? null : ahead.poll();
+                if (task == null || task.claimed.compareAndSet(false, true)) {
+                    boolean more = scanPartition(partition, record -> {
+                        if (matches(record)) {
+                            print(project(record));
+                            printed[0]++;
+                        }
+                        return this.limit < 0 || printed[0] < this.limit;
+                    });
+                    if (!more) {
+                        return;
+                    }
+                    continue;
+                }
+                for (String row = task.rows.take(); row != END_OF_PART; row = task.rows.take()) {
+                    print(row);
+                    printed[0]++;
+                    if (this.limit >= 0 && printed[0] >= this.limit) {
+                        return;
+                    }
+                }
+                if (task.failure != null) {
+                    throw task.failure;
+                }
+            }
+        }
+        finally {
+            // parts still being read ahead stop once they notice
+            stopped.set(true);
+        }
+    }
+
+    /**
+     * Scans the parts of the data in parallel on the common fork join pool and merges the partial results in the
+     * order of the parts. At most twice as many parts as the pool has threads are in flight, so partial results
+     * that are waiting to be merged don't pile up.
+     * @param scan computes the partial result of one part
+     * @param merge combines each partial result, in order
+     * @throws Exception if a part cannot be read
+     */
+    private <T> void scanParallel(PartialScan<T> scan, PartialMerge<T> merge) throws Exception {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<T>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        int partitions = partitions();
+        try {
+            while (next < partitions || !inFlight.isEmpty()) {
+                while (next < partitions && inFlight.size() < window) {
+                    int partition = next++;
+                    inFlight.add(pool.submit(() -> scan.scan(partition)));
+                }
+                T partial;
+                try {
+                    partial = inFlight.poll().get();
+                }
+                catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                if (!merge.merge(partial)) {
+                    break;
+                }
+            }
+        }
+        finally {
+            for (ForkJoinTask<T> task : inFlight) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Streams the records through the filter and prints the selected fields. Without an order each row is printed
+     * in the order it is stored and reading stops at the limit. With an order the matching rows are sorted by the
+     * typed value of each order field. With a limit only the top rows are kept, otherwise the sort spills to disk
+     * once more than the sort budget are held. When the data is in more than one file each file is filtered,
+     * sorted or aggregated in parallel and the partial results are merged.
+     * @throws Exception if the records cannot be read
+     */
+    public void importRecords() throws Exception {
+        long start = Metrics.start();
+        Metrics.increment(Metrics.Counter.QUERIES);
+        try {
+            run();
+        }
+        finally {
+            Metrics.stop(Metrics.Timer.QUERY, start);
+        }
+    }
+
+    /**
+     * Runs the query, see <code>importRecords</code>
+     */
+    private void run() throws Exception {
+        if (!hasData()) {
+            this.out.println("Info: No data to load from Json");
+            return;
+        }
+        if (this.group.length > 0) {
+            aggregate();
+            return;
+        }
+
+        if (this.order.length == 0) {
+            printInOrder();
+            return;
+        }
+
+        RecordComparator comparator = new RecordComparator(this.order);
+        if (this.limit >= 0) {
+            // only the best rows are kept so memory stays bounded by the limit
+            TopN top = new TopN(comparator, this.limit);
+            scanParallel(partition -> {
+                TopN partial = new TopN(comparator, this.limit);
+                scanPartition(partition, record -> {
+                    if (matches(record)) {
+                        partial.add(record);
+                    }
+                    return true;
+                });
+                return partial;
+            }, partial -> {
+                partial.forEach(record -> {
+                    top.add(record);
+                    return true;
+                });
+                return true;
+            });
+            top.forEach(record -> {
+                print(project(record));
+                return true;
+            });
+            return;
+        }
+
+        // the sort budget is shared between the files being sorted at once
+        int budget = partitions() == 1 ? this.sortBudget
+                : Math.max(1, this.sortBudget / (ForkJoinPool.commonPool().getParallelism() * 2));
+        List<ExternalSorter> sorters = new ArrayList<>();
+        int[] buffered = {0};
+        scanParallel(partition -> {
+            ExternalSorter sorter = new ExternalSorter(comparator, budget);
+            scanPartition(partition, record -> {
+                // If there is a filter only add the record if the filter matches
+                if (matches(record)) {
+                    sorter.add(record);
+                }
+                return true;
+            });
+            return sorter;
+        }, sorter -> {
+            sorters.add(sorter);
+            // the finished sorters are held until the merge, so they spill once they hold more than the budget
+            buffered[0] += sorter.getBufferedCount();
+            if (buffered[0] > this.sortBudget) {
+                for (ExternalSorter finished : sorters) {
+                    finished.flush();
+                }
+                buffered[0] = 0;
+            }
+            return true;
+        });
+
+        ExternalSorter.merge(sorters, record -> {
+            print(project(record));
+            return true;
+        });
+
+    }
+
+    /**
+     * Groups the matching records and prints one row of aggregates per group, ordered by the selected columns. Each
+     * file is aggregated on its own and the partial aggregates are merged.
+     * @throws Exception if the records cannot be read
+     */
+    private void aggregate() throws Exception {
+        HashAggregator aggregator = new HashAggregator(this.group, this.select);
+        scanParallel(partition -> {
+            HashAggregator partial = new HashAggregator(this.group, this.select);
+            scanPartition(partition, record -> {
+                if (matches(record)) {
+                    partial.add(record);
+                }
+                return true;
+            });
+            return partial;
+        }, partial -> {
+            aggregator.merge(partial);
+            return true;
+        });
+
+        List<Object[]> rows = aggregator.getRows();
+        if (this.order.length > 0) {
+            rows.sort(aggregator.comparator(this.order));
+        }
+        int count = this.limit < 0 ? rows.size() : Math.min(this.limit, rows.size());
+        for (int i = 0; i < count; i++) {
+            print(aggregator.format(rows.get(i)));
+        }
+    }
+
+    /**
+     * @return true if there is a file to read
+     */
+    protected boolean hasData() {
+        for (String filename : dataFiles()) {
+            if (new File(filename).exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads every record of every part in order and passes it to the sink
+     * @param sink receives each record, returns false to stop reading
+     * @throws Exception if the records cannot be read
+     */
+    protected void scan(RecordSink sink) throws Exception {
+        for (int partition = 0; partition < partitions(); partition++) {
+            if (!scanPartition(partition, sink)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads every record of a file and passes it to the sink. Segments are read without a json parser, compressed
+     * segments only inflate the blocks holding the records that are read and json is streamed without loading it all.
+     * A file that doesn't exist or whose statistics rule out the filter isn't read at all, and when the file has a
+     * secondary index only the records it finds for the filter are read.
+     * @param filename the segment, compressed segment or json file to read
+     * @param sink receives each record, returns false to stop reading
+     * @return false if the sink stopped the scan
+     * @throws Exception if the records cannot be read
+     */
+    protected boolean scanFile(String filename, RecordSink sink) throws Exception {
+        if (!new File(filename).exists() || !mayMatch(filename)) {
+            // the statistics show no record in the file can pass the filter
+            return true;
+        }
+
+        int[] slots = lookup(filename);
+        if (Metrics.ENABLED && slots == null) {
+            Metrics.add(Metrics.Counter.BYTES_READ, new File(filename).length());
+        }
+        if (SlotReader.canOpen(filename)) {
+            try (SlotReader reader = SlotReader.open(filename)) {
+                int count = slots == null ? reader.getCount() : slots.length;
+                for (int i = 0; i < count; i++) {
+                    if (!sink.accept(reader.getRecord(slots == null ? i : slots[i]))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        boolean[] stopped = {false};
+        if (slots == null) {
+            JsonRecordStream.stream(filename, record -> !(stopped[0] = !sink.accept(record)));
+        }
+        else if (slots.length > 0) {
+            // json has to be parsed in order, only the indexed records are passed on and parsing stops after the last
+            int[] position = {0, 0};
+            JsonRecordStream.stream(filename, record -> {
+                int index = position[0]++;
+                if (index == slots[position[1]]) {
+                    position[1]++;
+                    stopped[0] = !sink.accept(record);
+                    return !stopped[0] && position[1] < slots.length;
+                }
+                return true;
+            });
+        }
+        return !stopped[0];
+    }
+
+    /**
+     * Prints a row of the result, keeping it as well when the result is being cached
+     */
+    private void print(String row) {
+        this.out.println(row);
+        if (this.rows != null) {
+            this.rows.add(row);
+        }
+    }
+
+    /**
+     * @return the slots the secondary index of the file finds for the filter or null if it can't be used
+     */
+    private int[] lookup(String filename) {
+        if (this.filter == null) {
+            return null;
+        }
+        SecondaryIndex index = SecondaryIndex.read(filename);
+        return index == null ? null : this.filter.lookup(index);
+    }
+
+    /**
+     * @return false if the file has statistics showing none of its records can pass the filter
+     */
+    private boolean mayMatch(String filename) {
+        if (this.filter == null || !new File(filename).exists()) {
+            return true;
+        }
+        SegmentStats stats = SegmentStats.read(filename);
+        return stats == null || this.filter.mayMatch(stats);
+    }
+
+    /**
+     * @return true if there is no filter or the record matches it
+     */
+    private boolean matches(Record record) {
+        return this.filter == null || this.filter.matches(record);
+    }
+
+    /**
+     * @return the selected fields separated by commas
+     */
+    private String project(Record record) {
+        String value = "";
+        for(int j = 0; j < this.select.length; j++){
+            value += record.getField(this.select[j]);
+            value += (j == this.select.length -1 ? "": "," );
+        }
+        return value;
+    }
+
+
+    public static void main(String[] args) {
+        try {
+            if (args.length == 2 && args[0].equals("-d")) {
+                new QueryServer().serve(args[1]);
+                return;
+            }
+            Query query = new Query(args);
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        catch (IllegalStateException e) {
+            System.out.println("Could not import records, Exiting");
+            System.exit(1);
+        }
+        catch (Exception e) {
+            System.out.println("Error: could not run the query server");
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,278 @@
+package cscore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches query results keyed on the normalized query options. Each result remembers the fingerprint of the data it
+ * was read from, made of the version file that <code>Records</code> bumps on every export and update when
+ * <code>enableDataVersion</code> is on, plus the size and modified time of each data file, so a result is only
+ * returned while the data is unchanged. The least recently used results are evicted once there are more than
+ * <code>maxEntries</code> or they hold more than <code>maxChars</code> characters. The cache can be saved to a file
+ * so results survive between runs.
+ */
+public class QueryCache {
+    public static final String VERSION_FILE = "data.version";
+    private static final int FORMAT = 2;
+
+    private final int maxEntries;
+    private final long maxChars;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long chars = 0;
+
+    /**
+     * A cached result and the fingerprint of the data it came from
+     */
+    private static class Entry {
+        final String fingerprint;
+        final List<String> rows;
+        final long chars;
+
+        Entry(String fingerprint, List<String> rows) {
+            this.fingerprint = fingerprint;
+            this.rows = rows;
+            long total = 0;
+            for (String row : rows) {
+                total += row.length();
+            }
+            this.chars = total;
+        }
+    }
+
+    /**
+     * @param maxEntries the most results to keep
+     * @param maxChars the most characters of rows to keep across all results
+     */
+    public QueryCache(int maxEntries, long maxChars) {
+        this.maxEntries = maxEntries;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * @param key the normalized query
+     * @param fingerprint the fingerprint of the data as it is now
+     * @return the cached rows or null if the query isn't cached or the data has changed since
+     */
+    public synchronized List<String> get(String key, String fingerprint) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            remove(key);
+            return null;
+        }
+        return entry.rows;
+    }
+
+    /**
+     * Caches the result of a query, evicting the least recently used results if the cache is full
+     * @param key the normalized query
+     * @param fingerprint the fingerprint of the data the rows were read from
+     * @param rows the result
+     */
+    public synchronized void put(String key, String fingerprint, List<String> rows) {
+        remove(key);
+        Entry entry = new Entry(fingerprint, rows);
+        if (entry.chars > maxChars) {
+            return;
+        }
+        entries.put(key, entry);
+        chars += entry.chars;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || chars > maxChars) {
+            chars -= eldest.next().chars;
+            eldest.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            chars -= entry.chars;
+        }
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Builds the fingerprint of the data as it is now
+     * @param filenames the data files a query reads
+     * @return the version followed by the size and modified time of each file
+     */
+    public static String fingerprint(String... filenames) {
+        StringBuilder fingerprint = new StringBuilder(readVersion(VERSION_FILE));
+        for (String filename : filenames) {
+            File file = new File(filename);
+            fingerprint.append('|').append(file.length()).append(':').append(file.lastModified());
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @return the version of the data, the first line of the version file
+     */
+    private static String readVersion(String versionFile) {
+        List<String> lines = readLines(versionFile);
+        return lines.isEmpty() ? "0" : lines.get(0).trim();
+    }
+
+    private static List<String> readLines(String versionFile) {
+        try {
+            return Files.readAllLines(Paths.get(versionFile), StandardCharsets.UTF_8);
+        }
+        catch (IOException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Reads the version each file was last changed at. The version file holds the version of the data on its first
+     * line and then a line with the version and the name of each file an export or update changed.
+     * @param versionFile the version file
+     * @return the version of each changed file keyed on its name, files that never changed are missing
+     */
+    public static Map<String, Long> fileVersions(String versionFile) {
+        Map<String, Long> versions = new LinkedHashMap<>();
+        List<String> lines = readLines(versionFile);
+        for (int i = 1; i < lines.size(); i++) {
+            int space = lines.get(i).indexOf(' ');
+            try {
+                versions.put(lines.get(i).substring(space + 1), Long.parseLong(lines.get(i).substring(0, space)));
+            }
+            catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                // a line that isn't a version and a filename is skipped
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Moves the data to a new version so every cached result is stale and records it as the version of the changed
+     * files. Called by <code>Records</code> whenever an export or update changes files and the data version is
+     * enabled. The file is replaced as a whole so a reader never sees it half written.
+     * @param versionFile the version file, <code>VERSION_FILE</code> for the data a <code>Query</code> reads
+     * @param filenames the files that changed
+     * @throws IOException if the version file cannot be written
+     */
+    public static synchronized void bumpVersion(String versionFile, Collection<String> filenames)
+            throws IOException {
+        long version;
+        try {
+            version = Long.parseLong(readVersion(versionFile)) + 1;
+        }
+        catch (NumberFormatException e) {
+            version = 1;
+        }
+        Map<String, Long> versions = fileVersions(versionFile);
+        for (String filename : filenames) {
+            versions.put(filename, version);
+        }
+        StringBuilder text = new StringBuilder().append(version).append('\n');
+        for (Map.Entry<String, Long> entry : versions.entrySet()) {
+            text.append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+        }
+        Path temp = Paths.get(versionFile + ".tmp");
+        Files.write(temp, text.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, Paths.get(versionFile), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Saves the cached results to a file, most recently used last. Strings are written as their UTF-8 length and
+     * bytes so rows of any size can be saved. The results are written to a temporary file that then replaces the
+     * file, so a failed save never leaves a partial cache behind.
+     * @param filename the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save(String filename) throws IOException {
+        File temp = new File(filename + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(FORMAT);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue().fingerprint);
+                out.writeInt(entry.getValue().rows.size());
+                for (String row : entry.getValue().rows) {
+                    writeString(out, row);
+                }
+            }
+        }
+        catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        Files.move(temp.toPath(), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads results saved with <code>save</code>. A missing or unreadable file leaves the cache as it is.
+     * @param filename the file to read
+     */
+    public synchronized void load(String filename) {
+        File file = new File(filename);
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                String fingerprint = readString(in);
+                int rowCount = in.readInt();
+                List<String> rows = new ArrayList<>();
+                for (int j = 0; j < rowCount; j++) {
+                    rows.add(readString(in));
+                }
+                put(key, fingerprint, rows);
+            }
+        }
+        catch (IOException e) {
+            System.out.println("Error: could not load query cache '" + filename + "'");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
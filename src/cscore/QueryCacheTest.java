@@ -0,0 +1,136 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for <code>QueryCache</code>
+ */
+public class QueryCacheTest extends TestCase {
+    private static final String FILENAME = "TempQueryCache";
+
+    public void testGetPut() throws Exception {
+        // Setup
+        QueryCache cache = new QueryCache(10, 1000);
+        List<String> rows = Arrays.asList("stb1,4.0", "stb2,6.0");
+        // Call
+        cache.put("query", "v1", rows);
+        // Test
+        assertEquals(rows, cache.get("query", "v1"));
+        assertNull(cache.get("other", "v1"));
+        assertNull(cache.get("query", "v2"));
+        // a stale result is dropped
+        assertEquals(0, cache.size());
+    }
+
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        // Setup
+        QueryCache cache = new QueryCache(2, 1000);
+        // Call
+        cache.put("a", "v1", Arrays.asList("a"));
+        cache.put("b", "v1", Arrays.asList("b"));
+        cache.get("a", "v1");
+        cache.put("c", "v1", Arrays.asList("c"));
+        // Test
+        assertNotNull(cache.get("a", "v1"));
+        assertNull(cache.get("b", "v1"));
+        assertNotNull(cache.get("c", "v1"));
+    }
+
+    public void testEvictsBySize() throws Exception {
+        // Setup
+        QueryCache cache = new QueryCache(10, 10);
+        // Call
+        cache.put("a", "v1", Arrays.asList("12345"));
+        cache.put("b", "v1", Arrays.asList("123456"));
+        cache.put("c", "v1", Arrays.asList("12345678901"));
+        // Test
+        assertNull(cache.get("a", "v1"));
+        assertNotNull(cache.get("b", "v1"));
+        assertNull(cache.get("c", "v1"));
+    }
+
+    public void testExportChangesFingerprint() throws Exception {
+        // Setup
+        String before = QueryCache.fingerprint(FILENAME);
+        Records records = new Records();
+        records.enableDataVersion(QueryCache.VERSION_FILE);
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        // Call
+        records.exportToJson(FILENAME);
+        String after = QueryCache.fingerprint(FILENAME);
+        // Test
+        assertFalse(before.equals(after));
+        assertEquals(after, QueryCache.fingerprint(FILENAME));
+        assertTrue(new File(QueryCache.VERSION_FILE).exists());
+        // Cleanup
+        new File(FILENAME).delete();
+        new File(FILENAME + SegmentStats.SUFFIX).delete();
+        new File(QueryCache.VERSION_FILE).delete();
+    }
+
+    public void testExportWithoutDataVersion() throws Exception {
+        // Setup
+        Records records = new Records();
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        // Call
+        records.exportToJson(FILENAME);
+        // Test
+        assertFalse(new File(QueryCache.VERSION_FILE).exists());
+        // Cleanup
+        new File(FILENAME).delete();
+        new File(FILENAME + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testFileVersions() throws Exception {
+        // Setup
+        String versionFile = "TempVersion";
+        // Call
+        QueryCache.bumpVersion(versionFile, Arrays.asList("file1", "file with spaces"));
+        QueryCache.bumpVersion(versionFile, Arrays.asList("file1"));
+        Map<String, Long> versions = QueryCache.fileVersions(versionFile);
+        // Test
+        assertEquals(2, versions.size());
+        assertEquals(2L, (long) versions.get("file1"));
+        assertEquals(1L, (long) versions.get("file with spaces"));
+        assertFalse(new File(versionFile + ".tmp").exists());
+        // Cleanup
+        new File(versionFile).delete();
+    }
+
+    public void testSaveLoad() throws Exception {
+        // Setup
+        QueryCache cache = new QueryCache(10, 1000);
+        cache.put("query", "v1", Arrays.asList("stb1,4.0", "stb2,6.0"));
+        // Call
+        cache.save(FILENAME);
+        QueryCache loaded = new QueryCache(10, 1000);
+        loaded.load(FILENAME);
+        // Test
+        assertEquals(Arrays.asList("stb1,4.0", "stb2,6.0"), loaded.get("query", "v1"));
+        // Cleanup
+        new File(FILENAME).delete();
+    }
+
+    public void testSaveLoadLongRow() throws Exception {
+        // Setup
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            row.append('\u00e9');
+        }
+        QueryCache cache = new QueryCache(10, 1000000);
+        cache.put("query", "v1", Arrays.asList(row.toString(), "stb2,6.0"));
+        // Call
+        cache.save(FILENAME);
+        QueryCache loaded = new QueryCache(10, 1000000);
+        loaded.load(FILENAME);
+        // Test
+        assertEquals(Arrays.asList(row.toString(), "stb2,6.0"), loaded.get("query", "v1"));
+        assertFalse(new File(FILENAME + ".tmp").exists());
+        // Cleanup
+        new File(FILENAME).delete();
+    }
+}
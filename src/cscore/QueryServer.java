@@ -0,0 +1,363 @@
+package cscore;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Answers queries from a long running process so they don't pay for starting the JVM and reading the data each time.
+ * The records are loaded once and kept in memory. Before a query the data files are checked, at most once every
+ * <code>refreshMillis</code>, and only the files that are new or have changed are read again. A file has changed when
+ * its size, modified time or the version <code>Records</code> records for it in <code>QueryCache.VERSION_FILE</code>
+ * differs, the version catches an update in place that leaves the size and modified time alone. One query at a time
+ * reads the changed files while the others keep answering from the records already in memory.
+ * New exports are found through the manifest and each file is scanned in parallel like a <code>Query</code> does.
+ *
+ * Each line is a query with the same options as the command line, values with spaces are quoted, for example
+ * <pre>-s STB,TITLE -f "PROVIDER=warner bros" -o TITLE</pre>
+ * The rows of the result are written back followed by an empty line. Errors are written as a single
+ * 'Error: ...' line. Queries are run on a thread pool, results on one connection are written in the order the
+ * queries were sent. Repeated queries are answered from a <code>QueryCache</code> until the data changes.
+ */
+public class QueryServer {
+    private final ExecutorService pool;
+    private final long refreshMillis;
+    private final QueryCache cache = new QueryCache(1000, 64L * 1024 * 1024);
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private HashMap<String, DataFile> files = new HashMap<>();
+    private volatile Snapshot snapshot = null;
+    private long lastRefresh = 0;
+    private long filesLoaded = 0;
+
+    /**
+     * A data file as it was when it was loaded
+     */
+    private static class DataFile {
+        final String fingerprint;
+        final Record[] records;
+
+        DataFile(String fingerprint, Record[] records) {
+            this.fingerprint = fingerprint;
+            this.records = records;
+        }
+    }
+
+    /**
+     * The records of every data file and the fingerprint they were loaded at, replaced as a whole on a refresh
+     */
+    private static class Snapshot {
+        final List<Record[]> files;
+        final String fingerprint;
+
+        Snapshot(List<Record[]> files, String fingerprint) {
+            this.files = files;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * A query over the records in memory instead of the files
+     */
+    private static class WarmQuery extends Query {
+        private final Snapshot snapshot;
+
+        WarmQuery(Snapshot snapshot, PrintStream out) {
+            this.snapshot = snapshot;
+            this.out = out;
+        }
+
+        @Override
+        protected int partitions() {
+            return snapshot.files.size();
+        }
+
+        @Override
+        protected boolean scanPartition(int partition, RecordSink sink) throws Exception {
+            for (Record record : snapshot.files.get(partition)) {
+                if (!sink.accept(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected boolean hasData() {
+            return true;
+        }
+
+        @Override
+        protected String fingerprint() {
+            return snapshot.fingerprint;
+        }
+    }
+
+    /**
+     * Creates a server with a thread per processor that checks the data files once a second
+     */
+    public QueryServer() {
+        this(Runtime.getRuntime().availableProcessors(), 1000);
+    }
+
+    /**
+     * @param threads the number of queries to run at once
+     * @param refreshMillis how often the data files are checked for changes
+     */
+    public QueryServer(int threads, long refreshMillis) {
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     * @return the files holding the data, the same ones a <code>Query</code> reads
+     */
+    protected List<String> dataFiles() {
+        return Query.discoverFiles();
+    }
+
+    /**
+     * Reloads the data files that have changed since they were last loaded. Only the first load makes queries wait,
+     * while another query is reloading the files this returns straight away and the current records are used.
+     * @throws Exception if a file cannot be read
+     */
+    public void refresh() throws Exception {
+        if (snapshot == null) {
+            refreshLock.lock();
+        }
+        else if (!refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            if (snapshot != null && now - lastRefresh < refreshMillis) {
+                return;
+            }
+            lastRefresh = now;
+            reload();
+        }
+        finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the files that are new or have changed and replaces the snapshot if any did
+     */
+    private void reload() throws Exception {
+        // the versions are read first so a change made while loading makes the fingerprint stale
+        StringBuilder fingerprint = new StringBuilder(QueryCache.fingerprint());
+        Map<String, Long> versions = QueryCache.fileVersions(QueryCache.VERSION_FILE);
+        HashMap<String, DataFile> loaded = new HashMap<>();
+        List<Record[]> records = new ArrayList<>();
+        boolean changed = snapshot == null;
+        for (String filename : dataFiles()) {
+            File file = new File(filename);
+            String fileFingerprint = file.length() + ":" + file.lastModified() + ":"
+                    + versions.getOrDefault(filename, 0L);
+            DataFile data = files.get(filename);
+            if (data == null || !data.fingerprint.equals(fileFingerprint)) {
+                data = new DataFile(fileFingerprint, load(filename));
+                filesLoaded++;
+                changed = true;
+            }
+            loaded.put(filename, data);
+            records.add(data.records);
+            fingerprint.append('|').append(filename).append(':').append(fileFingerprint);
+        }
+
+        if (changed || loaded.size() != files.size()) {
+            files = loaded;
+            snapshot = new Snapshot(records, fingerprint.toString());
+        }
+    }
+
+    /**
+     * @return the number of times a data file has been read
+     */
+    public long getFilesLoaded() {
+        refreshLock.lock();
+        try {
+            return filesLoaded;
+        }
+        finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * @return every record in the file, or none if it doesn't exist
+     */
+    private static Record[] load(String filename) throws Exception {
+        List<Record> records = new ArrayList<>();
+        if (!new File(filename).exists()) {
+            return new Record[0];
+        }
+        if (SlotReader.canOpen(filename)) {
+            try (SlotReader reader = SlotReader.open(filename)) {
+                for (int i = 0; i < reader.getCount(); i++) {
+                    records.add(reader.getRecord(i));
+                }
+            }
+        }
+        else {
+            JsonRecordStream.stream(filename, records::add);
+        }
+        return records.toArray(new Record[0]);
+    }
+
+    /**
+     * Runs a single query
+     * @param line the query options
+     * @return the rows of the result, each followed by a line separator, or an error line
+     */
+    public String answer(String line) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(buffer, false);
+        try {
+            refresh();
+            WarmQuery query = new WarmQuery(snapshot, out);
+            query.optionsParse(tokenize(line));
+            query.importRecords(cache);
+        }
+        catch (IllegalArgumentException e) {
+            buffer.reset();
+            out.println("Error: " + e.getMessage());
+        }
+        catch (Exception e) {
+            buffer.reset();
+            out.println("Error: could not run query '" + line + "'");
+        }
+        out.flush();
+        return new String(buffer.toByteArray());
+    }
+
+    /**
+     * Splits a line on whitespace, text in single or double quotes stays together
+     */
+    static String[] tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+                else {
+                    token.append(c);
+                }
+            }
+            else if (c == '"' || c == '\'') {
+                quote = c;
+                token = token == null ? new StringBuilder() : token;
+            }
+            else if (Character.isWhitespace(c)) {
+                if (token != null) {
+                    tokens.add(token.toString());
+                    token = null;
+                }
+            }
+            else {
+                token = token == null ? new StringBuilder() : token;
+                token.append(c);
+            }
+        }
+        if (token != null) {
+            tokens.add(token.toString());
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Answers the queries read from <code>in</code> until it ends. The queries run on the pool while the next lines
+     * are read, and the results are written in the order the queries were read.
+     * @param in the queries, one per line
+     * @param out where the results are written
+     * @throws Exception if reading fails or the thread is interrupted
+     */
+    public void serve(BufferedReader in, PrintStream out) throws Exception {
+        BlockingQueue<Future<String>> pending = new LinkedBlockingQueue<>();
+        Future<String> end = CompletableFuture.completedFuture(null);
+        Thread writer = new Thread(() -> {
+            try {
+                for (Future<String> result = pending.take(); result != end; result = pending.take()) {
+                    out.print(result.get());
+                    out.println();
+                    out.flush();
+                }
+            }
+            catch (Exception e) {
+                System.out.println("Error: could not write query results");
+            }
+        }, "query-writer");
+        writer.start();
+
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    String query = line;
+                    pending.put(pool.submit(() -> answer(query)));
+                }
+            }
+        }
+        finally {
+            pending.put(end);
+            writer.join();
+        }
+    }
+
+    /**
+     * Serves queries until the process is stopped
+     * @param port the local port to listen on, or '-' to answer the queries on stdin and stop when it ends
+     * @throws Exception if the port cannot be opened
+     */
+    public void serve(String port) throws Exception {
+        if (port.equals("-")) {
+            serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), System.out);
+            pool.shutdown();
+            return;
+        }
+
+        ExecutorService connections = Executors.newCachedThreadPool();
+        try (ServerSocket server = new ServerSocket(Integer.parseInt(port), 50, InetAddress.getLoopbackAddress())) {
+            refresh();
+            while (true) {
+                Socket socket = server.accept();
+                connections.execute(() -> {
+                    try (Socket client = socket) {
+                        serve(new BufferedReader(new InputStreamReader(client.getInputStream(),
+                                StandardCharsets.UTF_8)),
+                                new PrintStream(client.getOutputStream(), false, "UTF-8"));
+                    }
+                    catch (Exception e) {
+                        System.out.println("Error: query connection failed");
+                    }
+                });
+            }
+        }
+    }
+}
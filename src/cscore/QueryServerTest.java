@@ -0,0 +1,154 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for <code>QueryServer</code>
+ */
+public class QueryServerTest extends TestCase {
+    private static final String NAME = "TempQueryServer";
+
+    private QueryServer createServer() {
+        return new QueryServer(2, 0) {
+            @Override
+            protected List<String> dataFiles() {
+                return Collections.singletonList(NAME);
+            }
+        };
+    }
+
+    private void export(String... lines) throws Exception {
+        Records records = new Records();
+        records.enableDataVersion(QueryCache.VERSION_FILE);
+        for (String line : lines) {
+            records.addRecord(new Record(line));
+        }
+        records.exportToSegment(NAME);
+    }
+
+    private void deleteExport() {
+        new File(NAME).delete();
+        new File(NAME + SegmentStats.SUFFIX).delete();
+        new File(QueryCache.VERSION_FILE).delete();
+    }
+
+    public void testTokenize() throws Exception {
+        // Call
+        String[] args = QueryServer.tokenize("-s STB,TITLE  -f \"PROVIDER=warner bros\" -o 'TITLE'");
+        // Test
+        assertEquals(6, args.length);
+        assertEquals("PROVIDER=warner bros", args[3]);
+        assertEquals("TITLE", args[5]);
+    }
+
+    public void testAnswer() throws Exception {
+        // Setup
+        export("stb1|the matrix|warner bros|2014-04-01|4.00|1:30",
+                "stb2|unbreakable|buena vista|2014-04-03|6.00|2:05",
+                "stb3|the hobbit|warner bros|2014-04-02|8.00|2:45");
+        QueryServer server = createServer();
+        // Call
+        String ordered = server.answer("-s STB,REV -f \"PROVIDER=warner bros\" -o REV");
+        String invalid = server.answer("-s STB -x 1");
+        // Test
+        assertEquals("stb1,4.0" + System.lineSeparator() + "stb3,8.0" + System.lineSeparator(), ordered);
+        assertTrue(invalid.startsWith("Error: -x"));
+        // Cleanup
+        deleteExport();
+    }
+
+    public void testRefreshesChangedFiles() throws Exception {
+        // Setup
+        export("stb1|the matrix|warner bros|2014-04-01|4.00|1:30");
+        QueryServer server = createServer();
+        String before = server.answer("-s STB");
+        // Call
+        deleteExport();
+        Thread.sleep(10);
+        export("stb1|the matrix|warner bros|2014-04-01|4.00|1:30",
+                "stb2|unbreakable|buena vista|2014-04-03|6.00|2:05");
+        String after = server.answer("-s STB -o STB");
+        // Test
+        assertEquals("stb1" + System.lineSeparator(), before);
+        assertEquals("stb1" + System.lineSeparator() + "stb2" + System.lineSeparator(), after);
+        // Cleanup
+        deleteExport();
+    }
+
+    public void testServeKeepsOrder() throws Exception {
+        // Setup
+        export("stb1|the matrix|warner bros|2014-04-01|4.00|1:30",
+                "stb2|unbreakable|buena vista|2014-04-03|6.00|2:05");
+        QueryServer server = createServer();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        String n = System.lineSeparator();
+        // Call
+        server.serve(new BufferedReader(new StringReader("-s STB -f STB=stb2\n-s STB -f STB=stb1\n")),
+                new PrintStream(buffer, true));
+        // Test
+        assertEquals("stb2" + n + n + "stb1" + n + n, buffer.toString());
+        // Cleanup
+        deleteExport();
+    }
+
+    public void testRefreshesFilesUpdatedInPlace() throws Exception {
+        // Setup
+        export("stb1|the matrix|warner bros|2014-04-01|4.00|1:30");
+        File file = new File(NAME);
+        long length = file.length();
+        long modified = file.lastModified();
+        QueryServer server = createServer();
+        String before = server.answer("-s STB,REV");
+        // Call
+        export("stb1|the matrix|warner bros|2014-04-01|5.00|1:30");
+        file.setLastModified(modified);
+        String after = server.answer("-s STB,REV");
+        // Test
+        assertEquals(length, file.length());
+        assertEquals("stb1,4.0" + System.lineSeparator(), before);
+        assertEquals("stb1,5.0" + System.lineSeparator(), after);
+        // Cleanup
+        deleteExport();
+    }
+
+    public void testRefreshLoadsOnlyChangedFiles() throws Exception {
+        // Setup
+        String other = NAME + "Other";
+        Records records = new Records();
+        records.enableDataVersion(QueryCache.VERSION_FILE);
+        records.addRecord(new Record("stb2|unbreakable|buena vista|2014-04-03|6.00|2:05"));
+        records.exportToSegment(other);
+        export("stb1|the matrix|warner bros|2014-04-01|4.00|1:30");
+        long modified = new File(NAME).lastModified();
+        QueryServer server = new QueryServer(2, 0) {
+            @Override
+            protected List<String> dataFiles() {
+                return Arrays.asList(NAME, other);
+            }
+        };
+        String before = server.answer("-s STB,REV -o STB");
+        long loadedBefore = server.getFilesLoaded();
+        // Call
+        export("stb1|the matrix|warner bros|2014-04-01|5.00|1:30");
+        new File(NAME).setLastModified(modified);
+        String after = server.answer("-s STB,REV -o STB");
+        // Test
+        String n = System.lineSeparator();
+        assertEquals("stb1,4.0" + n + "stb2,6.0" + n, before);
+        assertEquals("stb1,5.0" + n + "stb2,6.0" + n, after);
+        assertEquals(2, loadedBefore);
+        assertEquals(3, server.getFilesLoaded());
+        // Cleanup
+        deleteExport();
+        new File(other).delete();
+        new File(other + SegmentStats.SUFFIX).delete();
+    }
+}
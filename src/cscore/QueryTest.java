@@ -0,0 +1,256 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by beast on 5/7/17.
+ */
+public class QueryTest extends TestCase {
+    public void testOptionsParse() {
+        // Setup
+        String[] args = {"-s", "TITLE,REV,DATE", "-o", "DATE,TITLE", "-f", "DATE=2014-04-01"};
+        try {
+            // Call
+            Query query = new Query(args);
+            // Test
+            assertEquals(3, query.select.length);
+            assertEquals(2, query.order.length);
+            assertNotNull(query.filter);
+        }
+        catch (Exception e) {
+            assertTrue(false);
+        }
+     }
+
+    public void testOptionsParseNoFilter() {
+        // Setup
+        String[] args = {"-s", "TITLE,REV,DATE", "-o", "DATE,TITLE"};
+        try {
+            // Call
+            Query query = new Query(args);
+            // Test
+            assertEquals(3, query.select.length);
+            assertEquals(2, query.order.length);
+            assertNull(query.filter);
+        }
+        catch (Exception e) {
+            assertTrue(false);
+        }
+    }
+
+    public void testOptionsParseLimit() {
+        // Setup
+        String[] args = {"-s", "TITLE,REV", "-o", "REV", "-l", "10"};
+        // Call
+        Query query = new Query(args);
+        // Test
+        assertEquals(10, query.limit);
+    }
+
+    public void testOptionsParseNegativeLimit() {
+        // Setup
+        String[] args = {"-s", "TITLE,REV", "-l", "-1"};
+        try {
+            // Call
+            new Query(args);
+            fail("a negative limit should be rejected");
+        }
+        catch (IllegalArgumentException e) {
+            // Test
+            assertTrue(e.getMessage().contains("-l"));
+        }
+    }
+
+    public void testOptionsParseGroup() {
+        // Setup
+        String[] args = {"-s", "PROVIDER,REV:sum,STB:count", "-g", "PROVIDER", "-o", "REV:sum"};
+        // Call
+        Query query = new Query(args);
+        // Test
+        assertEquals(1, query.group.length);
+        assertEquals(3, query.select.length);
+    }
+
+    public void testCacheKeyIsNormalized() {
+        // Setup
+        Query query = new Query(new String[]{"-s", "TITLE, REV", "-f", "REV>4  AND  STB=stb1", "-m", "10"});
+        Query same = new Query(new String[]{"-f", "REV>4 AND STB=stb1", "-s", "TITLE,REV"});
+        Query other = new Query(new String[]{"-s", "TITLE,REV", "-l", "5"});
+        Query quoted = new Query(new String[]{"-s", "TITLE,REV", "-f", "TITLE='the  matrix'"});
+        Query requoted = new Query(new String[]{"-s", "TITLE,REV", "-f", "TITLE='the matrix'"});
+        // Test
+        assertEquals("REV", query.select[1]);
+        assertEquals(query.cacheKey(), same.cacheKey());
+        assertFalse(query.cacheKey().equals(other.cacheKey()));
+        assertFalse(quoted.cacheKey().equals(requoted.cacheKey()));
+    }
+
+    /**
+     * Runs a query over three export files instead of the discovered data
+     */
+    private String queryExports(String... args) throws Exception {
+        List<String> files = Arrays.asList("TempQuery0", "TempQuery1", "TempQuery2");
+        for (int i = 0; i < files.size(); i++) {
+            Records records = new Records();
+            for (int j = 0; j < 4; j++) {
+                records.addRecord(new Record("stb" + (i * 4 + j) + "|title" + j + "|provider" + (j % 2)
+                        + "|2014-04-0" + (i + 1) + "|" + (j + i) + ".00|1:30"));
+            }
+            if (i == 1) {
+                records.exportToJson(files.get(i));
+            }
+            else if (i == 2) {
+                records.exportToCompressedSegment(files.get(i));
+            }
+            else {
+                records.exportToSegment(files.get(i));
+            }
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Query query = new Query() {
+            @Override
+            protected List<String> dataFiles() {
+                return files;
+            }
+        };
+        query.out = new PrintStream(buffer, true);
+        query.optionsParse(args);
+        query.importRecords();
+        for (String file : files) {
+            new File(file).delete();
+            new File(file + SegmentStats.SUFFIX).delete();
+        }
+        return buffer.toString().replace(System.lineSeparator(), "\n");
+    }
+
+    public void testMultipleExports() throws Exception {
+        // Call
+        String all = queryExports("-s", "STB", "-f", "REV>=4");
+        String top = queryExports("-s", "STB,REV", "-o", "REV,STB", "-l", "3");
+        String sorted = queryExports("-s", "DATE", "-o", "DATE", "-f", "PROVIDER=provider1");
+        String grouped = queryExports("-s", "PROVIDER,REV:sum,STB:count", "-g", "PROVIDER", "-o", "PROVIDER");
+        String highest = queryExports("-s", "STB,REV", "-o", "REV:desc,STB", "-l", "2");
+        String spaced = queryExports("-s", "STB, REV", "-o", "REV:desc, STB", "-l", "2");
+        // Test
+        assertEquals(3, all.split("\n").length);
+        assertEquals("stb0,0.0\nstb1,1.0\nstb4,1.0\n", top);
+        assertEquals("2014-04-01\n2014-04-01\n2014-04-02\n2014-04-02\n2014-04-03\n2014-04-03\n", sorted);
+        assertEquals("provider0,12.0,6\nprovider1,18.0,6\n", grouped);
+        assertEquals("stb11,5.0\nstb10,4.0\n", highest);
+        assertEquals(highest, spaced);
+    }
+
+    public void testUnorderedKeepsFileOrder() throws Exception {
+        // Call
+        String all = queryExports("-s", "STB");
+        String first = queryExports("-s", "STB", "-l", "6");
+        // Test
+        assertEquals("stb0\nstb1\nstb2\nstb3\nstb4\nstb5\nstb6\nstb7\nstb8\nstb9\nstb10\nstb11\n", all);
+        assertEquals("stb0\nstb1\nstb2\nstb3\nstb4\nstb5\n", first);
+    }
+
+    public void testUnorderedStreamsLargeParts() throws Exception {
+        // Setup
+        int parts = 6;
+        int rows = 5000;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Query query = new Query() {
+            @Override
+            protected boolean hasData() {
+                return true;
+            }
+
+            @Override
+            protected int partitions() {
+                return parts;
+            }
+
+            @Override
+            protected boolean scanPartition(int partition, RecordSink sink) throws Exception {
+                for (int i = 0; i < rows; i++) {
+                    Record record = new Record("stb" + (partition * rows + i) + "|title|provider|2014-04-01|1.00|1:30");
+                    if (!sink.accept(record)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+        query.out = new PrintStream(buffer, true);
+        query.optionsParse(new String[]{"-s", "STB", "-l", "27000"});
+        // Call
+        query.importRecords();
+        // Test
+        String[] printed = buffer.toString().split(System.lineSeparator());
+        assertEquals(27000, printed.length);
+        for (int i = 0; i < printed.length; i++) {
+            assertEquals("stb" + i, printed[i]);
+        }
+    }
+
+    public void testLimitZero() throws Exception {
+        // Setup
+        String filename = "TempQueryLimit";
+        Records records = new Records();
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.exportToSegment(filename);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Query query = new Query() {
+            @Override
+            protected List<String> dataFiles() {
+                return Arrays.asList(filename);
+            }
+        };
+        query.out = new PrintStream(buffer, true);
+        query.optionsParse(new String[]{"-s", "STB", "-l", "0"});
+        // Call
+        query.importRecords();
+        // Test
+        assertEquals("", buffer.toString());
+        // Cleanup
+        new File(filename).delete();
+        new File(filename + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testDiscoverFilesFromManifest() throws Exception {
+        // Setup
+        Records plain = new Records();
+        plain.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        Records listed = new Records();
+        listed.enableManifest();
+        listed.addRecord(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        // Call
+        plain.exportToSegment("TempManifest0");
+        List<String> before = Query.discoverFiles();
+        listed.exportToSegment("TempManifest1");
+        List<String> after = Query.discoverFiles();
+        // Test
+        assertEquals(Arrays.asList("data.json"), before);
+        assertEquals(Arrays.asList("TempManifest1"), after);
+        // Cleanup
+        for (String file : new String[]{"TempManifest0", "TempManifest1"}) {
+            new File(file).delete();
+            new File(file + SegmentStats.SUFFIX).delete();
+        }
+        new File(SegmentManifest.FILE).delete();
+    }
+
+    public void testOptionsParseInvalid() {
+        // Setup
+        String[] args = {"-s", "TITLE,REV,DATE", "-o"};
+        try {
+            // Call
+            Query query = new Query(args);
+            // Test
+            assertTrue(false);
+        }
+        catch (Exception e) {
+            assertTrue(true);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package cscore;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Object to store a single Record. There will be no setters for this because once the object created it should not be
+ * modified. There are two constructors, one which takes in the individual arguments and one that takes in a string and
+ * will parse the arguments out of the string.
+ */
+public class Record {
+    private String stb;
+    // canonical instances from StringPool, shared with every other record with the same values
+    private String title;
+    private String provider;
+    private LocalDateTime date_view_time;
+    private double rev;
+    private RecordKey key;
+
+    /**
+     * Constructor to create a new <code>Record</code>
+     * @param stb  The set top box id on which the media asset was viewed. (Text, max size 64 char)
+     * @param title The title of the media asset. (Text, max size 64 char)
+     * @param provider The distributor of the media asset. (Text, max size 64 char)
+     * @param date TThe local date on which the content was leased by through the STB (A date in YYYY-MM-DD format)
+     * @param rev The price incurred by the STB to lease the asset. (Price in US dollars and cents)
+     * @param view_time The amount of time the STB played the asset.  (Time in hours:minutes)
+     */
+    public Record(String stb, String title, String provider, String date, double rev, String view_time) throws Exception {
+        this.stb = stb;
+        this.title = StringPool.intern(title);
+        this.provider = StringPool.intern(provider);
+        setDateTime(date, view_time);
+        this.rev = rev;
+
+    }
+
+    /**
+     * Constructor that parses a formatted string to create a new record.
+     * Expected format:  STB|TITLE|PROVIDER|DATE|REV|VIEW_TIME
+     * @param data the string to be parsed
+     * @throws Exception if parsing fails
+     */
+    public Record (String data) throws Exception {
+        parser(data);
+    }
+
+    /**
+     * Constructor used by <code>RecordParser</code> once the fields have already been parsed and interned
+     */
+    Record(String stb, String title, String provider, LocalDateTime date_view_time, double rev) {
+        this.stb = stb;
+        this.title = title;
+        this.provider = provider;
+        this.date_view_time = date_view_time;
+        this.rev = rev;
+    }
+
+    /**
+     * Creates a record from values that have already been decoded, for example from a segment
+     * @param epochDay the date as the number of days since 1970-01-01
+     * @param viewMinutes the view time as a number of minutes
+     */
+    static Record fromFields(String stb, String title, String provider, int epochDay, int viewMinutes, double rev) {
+        LocalDateTime dateTime = LocalDateTime.of(LocalDate.ofEpochDay(epochDay),
+                LocalTime.of(viewMinutes / 60, viewMinutes % 60));
+        return new Record(stb, StringPool.intern(title), StringPool.intern(provider), dateTime, rev);
+    }
+
+    /**
+     *
+     * @param date string representing the data with the format of yyyy-MM-dd
+     * @param time string representing the time with the format of HH:mm
+     * @throws ParseException if either date or time are invalid
+     */
+    protected void setDateTime(String date, String time) throws ParseException{
+
+        try { // If the date is invalid it will throw an exception
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd k:mm");
+            String datetime = date + " " + time;
+            this.date_view_time = LocalDateTime.parse(date + " " + time, formatter);
+        }
+        // If it wasn't able to set the date because of invalid format or a bad date, throws an exception
+        catch (IllegalArgumentException iae) {
+            throw new ParseException(date + " " + time + " is not a valid date/time", 0);
+        }
+        catch (NullPointerException np) {
+            throw new ParseException("Date or Time cannot be null", 0);
+        }
+
+    }
+
+    public String getStb() {
+        return stb;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public double getRev() {
+        return rev;
+    }
+
+    public String getDate() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+        return date_view_time.format(formatter);
+    }
+
+    public String getViewTime() {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("k:mm");
+        return date_view_time.format(formatter);
+    }
+
+    /**
+     * @return the view time as a number of minutes
+     */
+    public int getViewMinutes() {
+        return date_view_time.getHour() * 60 + date_view_time.getMinute();
+    }
+
+    /**
+     * Gets a field by the name it is exported with
+     * @param name one of STB, TITLE, PROVIDER, DATE, REV, VIEW_TIME or KEY
+     * @return the value of the field, a Double for REV and a String for the others, or null for an unknown name
+     */
+    public Object getField(String name) {
+        switch (name) {
+            case "STB": return getStb();
+            case "TITLE": return getTitle();
+            case "PROVIDER": return getProvider();
+            case "DATE": return getDate();
+            case "REV": return getRev();
+            case "VIEW_TIME": return getViewTime();
+            case "KEY": return getKey();
+            default: return null;
+        }
+    }
+
+    /**
+     * @return the record in the same STB|TITLE|PROVIDER|DATE|REV|VIEW_TIME format that the parser reads
+     */
+    public String toLine() {
+        return getStb() + "|" + getTitle() + "|" + getProvider() + "|" + getDate() + "|" + getRev() + "|"
+                + getViewTime();
+    }
+
+    public String getKey(){
+        return getStb() + getTitle() + getDate();
+    }
+
+    /**
+     * @return the date as the number of days since 1970-01-01
+     */
+    public int getEpochDay() {
+        return (int) date_view_time.toLocalDate().toEpochDay();
+    }
+
+    /**
+     * @return the STB+TITLE+DATE key identifying this record, built the first time it is needed
+     */
+    public RecordKey getRecordKey() {
+        if (key == null) {
+            key = new RecordKey(getStb(), getTitle(), getEpochDay());
+        }
+        return key;
+    }
+
+
+    /**
+     * Parser splits a string into the individual pieces using the current thread's <code>RecordParser</code> and sets
+     * the Record variables
+     * @param data the string that will be parsed
+     * @exception if any of the parsing or number conversion fails, this will throw an exception
+     */
+    protected void parser(String data) throws Exception{
+        Record parsed = RecordParser.get().parse(data);
+        this.stb = parsed.stb;
+        this.title = parsed.title;
+        this.provider = parsed.provider;
+        this.date_view_time = parsed.date_view_time;
+        this.rev = parsed.rev;
+    }
+
+}
@@ -0,0 +1,76 @@
+package cscore;
+
+import java.util.Comparator;
+
+/**
+ * Orders records by one or more fields. Each field is compared by its type: DATE by day, REV as a number,
+ * VIEW_TIME by minutes and the text fields as strings. A field is in ascending order unless it ends with
+ * <code>:desc</code>, <code>:asc</code> can be used to make the ascending order explicit.
+ */
+public class RecordComparator implements Comparator<Record> {
+    public static final String DESCENDING = ":desc";
+    public static final String ASCENDING = ":asc";
+    private final Comparator<Record> comparator;
+
+    /**
+     * @param fields the field names to order by, each optionally followed by :desc or :asc, earlier fields take
+     * priority
+     * @throws IllegalArgumentException if a field name is unknown
+     */
+    public RecordComparator(String[] fields) {
+        Comparator<Record> combined = null;
+        for (String field : fields) {
+            Comparator<Record> next = forField(fieldName(field));
+            if (isDescending(field)) {
+                next = next.reversed();
+            }
+            combined = combined == null ? next : combined.thenComparing(next);
+        }
+        this.comparator = combined == null ? (a, b) -> 0 : combined;
+    }
+
+    /**
+     * @param field a field name
+     * @return the comparator for the field's type
+     * @throws IllegalArgumentException if the field name is unknown
+     */
+    public static Comparator<Record> forField(String field) {
+        switch (field) {
+            case "STB": return Comparator.comparing(Record::getStb);
+            case "TITLE": return Comparator.comparing(Record::getTitle);
+            case "PROVIDER": return Comparator.comparing(Record::getProvider);
+            case "KEY": return Comparator.comparing(Record::getKey);
+            case "DATE": return Comparator.comparingInt(Record::getEpochDay);
+            case "REV": return Comparator.comparingDouble(Record::getRev);
+            case "VIEW_TIME": return Comparator.comparingInt(Record::getViewMinutes);
+            default: throw new IllegalArgumentException(field + " is not a valid field");
+        }
+    }
+
+    /**
+     * @param order an order column, optionally followed by :desc or :asc
+     * @return true if the column ends with :desc
+     */
+    public static boolean isDescending(String order) {
+        return order.endsWith(DESCENDING);
+    }
+
+    /**
+     * @param order an order column, optionally followed by :desc or :asc
+     * @return the column without the direction
+     */
+    public static String fieldName(String order) {
+        if (order.endsWith(DESCENDING)) {
+            return order.substring(0, order.length() - DESCENDING.length());
+        }
+        if (order.endsWith(ASCENDING)) {
+            return order.substring(0, order.length() - ASCENDING.length());
+        }
+        return order;
+    }
+
+    @Override
+    public int compare(Record a, Record b) {
+        return comparator.compare(a, b);
+    }
+}
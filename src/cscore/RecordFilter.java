@@ -0,0 +1,709 @@
+package cscore;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A filter expression compiled into typed predicates. The expression is made of terms joined with AND and OR, AND
+ * binds tighter than OR. A term is one of
+ * <pre>
+ * FIELD=VALUE  FIELD!=VALUE  FIELD&lt;VALUE  FIELD&lt;=VALUE  FIELD&gt;VALUE  FIELD&gt;=VALUE
+ * FIELD=LOW..HIGH          inclusive range
+ * FIELD IN (VALUE,VALUE)   any of the values
+ * </pre>
+ * A value runs up to the AND or OR that starts the next term, or can be put in single or double quotes, for example
+ * <code>TITLE='Romeo AND Juliet' OR TITLE IN ("crouching tiger, hidden dragon")</code>. An unquoted AND or OR only
+ * starts a new term when it is followed by an upper case name and an operator or IN, otherwise it is part of the
+ * value. So <code>TITLE=Romeo AND Juliet</code> and <code>TITLE=x AND rev&gt;4</code> are each a single term on
+ * TITLE, while <code>TITLE=x AND COLOUR=red</code> is two terms and fails because COLOUR is not a field.
+ * DATE, REV and VIEW_TIME are compared as numbers (days, dollars and minutes) and the other fields as text. Values
+ * are parsed once when the filter is compiled so checking a record doesn't build any strings for those fields. Terms on
+ * DATE, REV, PROVIDER and STB can also rule out a whole file from its <code>SegmentStats</code>, and equality terms on
+ * STB, TITLE and PROVIDER find their records in a <code>SecondaryIndex</code>. A compiled filter prints in a canonical
+ * form, so expressions that only differ in spacing, quoting or the order of IN values print the same.
+ */
+public abstract class RecordFilter {
+
+    /**
+     * @param record the record to check
+     * @return true if the record passes the filter
+     */
+    public abstract boolean matches(Record record);
+
+    /**
+     * Checks the filter against the statistics of a file so files without any matching records can be skipped
+     * @param stats the statistics of the file
+     * @return false if no record in the file can match, true if one might
+     */
+    public boolean mayMatch(SegmentStats stats) {
+        return true;
+    }
+
+    /**
+     * Finds the records that can pass the filter from the secondary index of a file. The records still need to be
+     * checked with <code>matches</code> since only the equality terms are looked up.
+     * @param index the secondary index of the file
+     * @return the sorted slots of the records that might pass or null if the index can't narrow them down
+     */
+    public int[] lookup(SecondaryIndex index) {
+        return null;
+    }
+
+    /**
+     * @return the filter in its canonical form, values are quoted so spaces inside them are kept
+     */
+    @Override
+    public abstract String toString();
+
+    /**
+     * @return the value in single quotes with quotes and backslashes escaped
+     */
+    static String quote(String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    /**
+     * @return the filters joined with the keyword, in parentheses
+     */
+    private static String join(RecordFilter[] filters, String keyword) {
+        StringBuilder text = new StringBuilder("(");
+        for (int i = 0; i < filters.length; i++) {
+            text.append(i == 0 ? "" : keyword).append(filters[i]);
+        }
+        return text.append(')').toString();
+    }
+
+    /**
+     * @return the slots in both sorted arrays
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            }
+            else if (a[i] > b[j]) {
+                j++;
+            }
+            else {
+                result[size++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return the slots in either sorted array
+     */
+    static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[size++] = a[i++];
+            }
+            else if (i == a.length || b[j] < a[i]) {
+                result[size++] = b[j++];
+            }
+            else {
+                result[size++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Compiles a filter expression
+     * @param expression the expression, for example "DATE>=2014-04-01 AND PROVIDER IN (hbo,warner bros)"
+     * @return the compiled filter
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static RecordFilter compile(String expression) {
+        Parser parser = new Parser(expression);
+        RecordFilter filter = parser.expression();
+        parser.skipSpaces();
+        if (parser.position < expression.length()) {
+            throw new IllegalArgumentException("'" + expression.substring(parser.position) + "' is not a valid filter");
+        }
+        return filter;
+    }
+
+    /**
+     * Compiles a term once its field, operator and values have been read
+     */
+    private static RecordFilter term(String field, String operator, List<String> values) {
+        if (operator.equals("IN")) {
+            if (isNumeric(field)) {
+                List<RecordFilter> any = new ArrayList<>();
+                for (String value : values) {
+                    any.add(range(field, value, true, value, true));
+                }
+                return new AnyOf(any);
+            }
+            return new TextIn(field, text(field), new HashSet<>(values));
+        }
+
+        String value = values.get(0);
+        if (isNumeric(field)) {
+            int dots = value.indexOf("..");
+            switch (operator) {
+                case "=":
+                    if (dots > 0) {
+                        return range(field, value.substring(0, dots), true, value.substring(dots + 2), true);
+                    }
+                    return range(field, value, true, value, true);
+                case "!=": return new Not(range(field, value, true, value, true));
+                case "<": return range(field, null, false, value, false);
+                case "<=": return range(field, null, false, value, true);
+                case ">": return range(field, value, false, null, false);
+                default: return range(field, value, true, null, false);
+            }
+        }
+        return new TextCompare(field, text(field), operator, value);
+    }
+
+    /**
+     * Reads an expression term by term. The operator is the one right after the field name, so a value can hold
+     * operator characters, and AND or OR only join terms when an upper case field name and an operator follow them,
+     * so "TITLE=Romeo AND Juliet" is a single term. A value in single or double quotes is taken as it is with a
+     * backslash escaping the next character, which is needed for values with commas in an IN list or that end in
+     * something like "AND REV>4".
+     */
+    private static class Parser {
+        private static final String[] OPERATORS = {"!=", "<=", ">=", "=", "<", ">"};
+        final String text;
+        int position = 0;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        RecordFilter expression() {
+            List<RecordFilter> any = new ArrayList<>();
+            any.add(conjunction());
+            while (keyword("OR")) {
+                any.add(conjunction());
+            }
+            return any.size() == 1 ? any.get(0) : new AnyOf(any);
+        }
+
+        private RecordFilter conjunction() {
+            List<RecordFilter> all = new ArrayList<>();
+            all.add(term());
+            while (keyword("AND")) {
+                all.add(term());
+            }
+            return all.size() == 1 ? all.get(0) : new AllOf(all);
+        }
+
+        private RecordFilter term() {
+            skipSpaces();
+            int start = position;
+            String field = identifier();
+            skipSpaces();
+            if (field.isEmpty()) {
+                throw new IllegalArgumentException("'" + text.substring(start) + "' is not a valid filter");
+            }
+            if (isIn(position)) {
+                position += 2;
+                return RecordFilter.term(field, "IN", list());
+            }
+            String operator = operator(position);
+            if (operator == null) {
+                throw new IllegalArgumentException("'" + text.substring(start) + "' is not a valid filter");
+            }
+            position += operator.length();
+            skipSpaces();
+            return RecordFilter.term(field, operator, Arrays.asList(value(false)));
+        }
+
+        /**
+         * Reads the values of an IN list, in brackets or up to the end of the term
+         */
+        private List<String> list() {
+            skipSpaces();
+            List<String> values = new ArrayList<>();
+            if (position < text.length() && text.charAt(position) == '(') {
+                position++;
+                while (true) {
+                    skipSpaces();
+                    values.add(value(true));
+                    skipSpaces();
+                    if (position >= text.length()) {
+                        throw new IllegalArgumentException("'" + text + "' is missing a ')'");
+                    }
+                    if (text.charAt(position++) == ')') {
+                        return values;
+                    }
+                }
+            }
+            for (String value : value(false).split(",")) {
+                values.add(value.trim());
+            }
+            return values;
+        }
+
+        /**
+         * Reads a quoted value or an unquoted one, which ends at the AND or OR of the next term, or at a ',' or ')'
+         * inside an IN list
+         */
+        private String value(boolean inList) {
+            if (position < text.length() && (text.charAt(position) == '\'' || text.charAt(position) == '"')) {
+                char quote = text.charAt(position++);
+                StringBuilder value = new StringBuilder();
+                while (position < text.length() && text.charAt(position) != quote) {
+                    if (text.charAt(position) == '\\' && position + 1 < text.length()) {
+                        position++;
+                    }
+                    value.append(text.charAt(position++));
+                }
+                if (position >= text.length()) {
+                    throw new IllegalArgumentException("'" + text + "' is missing a closing " + quote);
+                }
+                position++;
+                return value.toString();
+            }
+            int start = position;
+            while (position < text.length()) {
+                char c = text.charAt(position);
+                if (inList && (c == ',' || c == ')')) {
+                    break;
+                }
+                if (!inList && Character.isWhitespace(c) && joinsTerm(position)) {
+                    break;
+                }
+                position++;
+            }
+            return text.substring(start, position).trim();
+        }
+
+        /**
+         * Reads AND or OR if it is next and is followed by another term
+         */
+        private boolean keyword(String word) {
+            if (!joinsTerm(position)) {
+                return false;
+            }
+            int next = skipSpaces(position);
+            if (!text.startsWith(word, next)) {
+                return false;
+            }
+            position = next + word.length();
+            return true;
+        }
+
+        /**
+         * @return true if the text at the index is whitespace, AND or OR, whitespace and the start of a term
+         */
+        private boolean joinsTerm(int index) {
+            if (index >= text.length() || !Character.isWhitespace(text.charAt(index))) {
+                return false;
+            }
+            int next = skipSpaces(index);
+            for (String word : new String[]{"AND", "OR"}) {
+                int after = next + word.length();
+                if (text.startsWith(word, next) && after < text.length()
+                        && Character.isWhitespace(text.charAt(after))) {
+                    return startsTerm(skipSpaces(after));
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return true if an upper case name followed by an operator or IN starts at the index, the name is checked
+         * to be a field once the term is read
+         */
+        private boolean startsTerm(int index) {
+            int end = index;
+            while (end < text.length() && (Character.isUpperCase(text.charAt(end)) || text.charAt(end) == '_')) {
+                end++;
+            }
+            if (end == index) {
+                return false;
+            }
+            end = skipSpaces(end);
+            return operator(end) != null || isIn(end);
+        }
+
+        private boolean isIn(int index) {
+            return text.startsWith("IN", index) && index + 2 < text.length()
+                    && (text.charAt(index + 2) == '(' || Character.isWhitespace(text.charAt(index + 2)));
+        }
+
+        private String operator(int index) {
+            for (String operator : OPERATORS) {
+                if (text.startsWith(operator, index)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        private String identifier() {
+            int start = position;
+            while (position < text.length() && isIdentifier(text.charAt(position))) {
+                position++;
+            }
+            return text.substring(start, position);
+        }
+
+        private static boolean isIdentifier(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+
+        void skipSpaces() {
+            position = skipSpaces(position);
+        }
+
+        private int skipSpaces(int index) {
+            while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    private static boolean isNumeric(String field) {
+        return field.equals("DATE") || field.equals("REV") || field.equals("VIEW_TIME");
+    }
+
+    private static Function<Record, String> text(String field) {
+        switch (field) {
+            case "STB": return Record::getStb;
+            case "TITLE": return Record::getTitle;
+            case "PROVIDER": return Record::getProvider;
+            case "KEY": return Record::getKey;
+            default: throw new IllegalArgumentException(field + " is not a valid field");
+        }
+    }
+
+    /**
+     * Builds a range over a numeric field, a null bound is open
+     */
+    private static NumberRange range(String field, String low, boolean lowInclusive, String high,
+                                     boolean highInclusive) {
+        ToDoubleFunction<Record> getter;
+        switch (field) {
+            case "DATE": getter = Record::getEpochDay; break;
+            case "REV": getter = Record::getRev; break;
+            default: getter = Record::getViewMinutes; break;
+        }
+        return new NumberRange(field, getter,
+                low == null ? Double.NEGATIVE_INFINITY : number(field, low), lowInclusive,
+                high == null ? Double.POSITIVE_INFINITY : number(field, high), highInclusive);
+    }
+
+    /**
+     * Parses a value of a numeric field into the number the record getter returns
+     */
+    static double number(String field, String value) {
+        try {
+            switch (field) {
+                case "DATE":
+                    return LocalDate.parse(value).toEpochDay();
+                case "VIEW_TIME":
+                    String[] parts = value.split(":");
+                    int hours = Integer.parseInt(parts[0]);
+                    return (hours == 24 ? 0 : hours) * 60 + Integer.parseInt(parts[1]);
+                default:
+                    return Double.parseDouble(value);
+            }
+        }
+        catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("'" + value + "' is not a valid " + field);
+        }
+    }
+
+    /**
+     * Passes when every filter passes
+     */
+    static class AllOf extends RecordFilter {
+        final RecordFilter[] filters;
+
+        AllOf(List<RecordFilter> filters) {
+            this.filters = filters.toArray(new RecordFilter[0]);
+        }
+
+        @Override
+        public boolean matches(Record record) {
+            for (RecordFilter filter : filters) {
+                if (!filter.matches(record)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean mayMatch(SegmentStats stats) {
+            for (RecordFilter filter : filters) {
+                if (!filter.mayMatch(stats)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int[] lookup(SecondaryIndex index) {
+            // terms that can't be looked up are left for matches to check
+            int[] slots = null;
+            for (RecordFilter filter : filters) {
+                int[] found = filter.lookup(index);
+                if (found != null) {
+                    slots = slots == null ? found : intersect(slots, found);
+                }
+            }
+            return slots;
+        }
+
+        @Override
+        public String toString() {
+            return join(filters, " AND ");
+        }
+    }
+
+    /**
+     * Passes when any filter passes
+     */
+    static class AnyOf extends RecordFilter {
+        final RecordFilter[] filters;
+
+        AnyOf(List<RecordFilter> filters) {
+            this.filters = filters.toArray(new RecordFilter[0]);
+        }
+
+        @Override
+        public boolean matches(Record record) {
+            for (RecordFilter filter : filters) {
+                if (filter.matches(record)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean mayMatch(SegmentStats stats) {
+            for (RecordFilter filter : filters) {
+                if (filter.mayMatch(stats)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int[] lookup(SecondaryIndex index) {
+            int[] slots = new int[0];
+            for (RecordFilter filter : filters) {
+                int[] found = filter.lookup(index);
+                if (found == null) {
+                    return null;
+                }
+                slots = union(slots, found);
+            }
+            return slots;
+        }
+
+        @Override
+        public String toString() {
+            return join(filters, " OR ");
+        }
+    }
+
+    /**
+     * Passes when the filter doesn't
+     */
+    static class Not extends RecordFilter {
+        final RecordFilter filter;
+
+        Not(RecordFilter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean matches(Record record) {
+            return !filter.matches(record);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + filter;
+        }
+    }
+
+    /**
+     * Passes when a numeric field is between two bounds
+     */
+    static class NumberRange extends RecordFilter {
+        final String field;
+        final ToDoubleFunction<Record> getter;
+        final double low;
+        final boolean lowInclusive;
+        final double high;
+        final boolean highInclusive;
+
+        NumberRange(String field, ToDoubleFunction<Record> getter, double low, boolean lowInclusive, double high,
+                    boolean highInclusive) {
+            this.field = field;
+            this.getter = getter;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        @Override
+        public boolean matches(Record record) {
+            return contains(getter.applyAsDouble(record));
+        }
+
+        @Override
+        public boolean mayMatch(SegmentStats stats) {
+            switch (field) {
+                case "DATE": return overlaps(stats.getMinEpochDay(), stats.getMaxEpochDay());
+                case "REV": return overlaps(stats.getMinRev(), stats.getMaxRev());
+                default: return true;
+            }
+        }
+
+        /**
+         * @return true if some value between min and max is in the range
+         */
+        boolean overlaps(double min, double max) {
+            return min <= max && (lowInclusive ? max >= low : max > low) && (highInclusive ? min <= high : min < high);
+        }
+
+        boolean contains(double value) {
+            return (lowInclusive ? value >= low : value > low) && (highInclusive ? value <= high : value < high);
+        }
+
+        @Override
+        public String toString() {
+            return field + (lowInclusive ? "[" : "(") + low + ".." + high + (highInclusive ? "]" : ")");
+        }
+    }
+
+    /**
+     * Compares a text field to a value
+     */
+    static class TextCompare extends RecordFilter {
+        final String field;
+        final Function<Record, String> getter;
+        final String operator;
+        final String value;
+
+        TextCompare(String field, Function<Record, String> getter, String operator, String value) {
+            this.field = field;
+            this.getter = getter;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        @Override
+        public boolean matches(Record record) {
+            int compare = getter.apply(record).compareTo(value);
+            switch (operator) {
+                case "=": return compare == 0;
+                case "!=": return compare != 0;
+                case "<": return compare < 0;
+                case "<=": return compare <= 0;
+                case ">": return compare > 0;
+                default: return compare >= 0;
+            }
+        }
+
+        @Override
+        public boolean mayMatch(SegmentStats stats) {
+            if (!operator.equals("=")) {
+                return true;
+            }
+            switch (field) {
+                case "PROVIDER": return stats.getProviders().contains(value);
+                case "STB": return stats.mightContainStb(value);
+                default: return true;
+            }
+        }
+
+        @Override
+        public int[] lookup(SecondaryIndex index) {
+            return operator.equals("=") && !field.equals("KEY") ? index.lookup(field, value) : null;
+        }
+
+        @Override
+        public String toString() {
+            return field + operator + quote(value);
+        }
+    }
+
+    /**
+     * Passes when a text field is one of a set of values
+     */
+    static class TextIn extends RecordFilter {
+        final String field;
+        final Function<Record, String> getter;
+        final HashSet<String> values;
+
+        TextIn(String field, Function<Record, String> getter, HashSet<String> values) {
+            this.field = field;
+            this.getter = getter;
+            this.values = values;
+        }
+
+        @Override
+        public boolean matches(Record record) {
+            return values.contains(getter.apply(record));
+        }
+
+        @Override
+        public boolean mayMatch(SegmentStats stats) {
+            if (!field.equals("PROVIDER") && !field.equals("STB")) {
+                return true;
+            }
+            for (String value : values) {
+                if (field.equals("PROVIDER") ? stats.getProviders().contains(value) : stats.mightContainStb(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int[] lookup(SecondaryIndex index) {
+            if (field.equals("KEY")) {
+                return null;
+            }
+            int[] slots = new int[0];
+            for (String value : values) {
+                slots = union(slots, index.lookup(field, value));
+            }
+            return slots;
+        }
+
+        @Override
+        public String toString() {
+            List<String> sorted = new ArrayList<>(values);
+            Collections.sort(sorted);
+            StringBuilder text = new StringBuilder(field).append(" IN (");
+            for (int i = 0; i < sorted.size(); i++) {
+                text.append(i == 0 ? "" : ",").append(quote(sorted.get(i)));
+            }
+            return text.append(')').toString();
+        }
+    }
+}
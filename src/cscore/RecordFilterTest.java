@@ -0,0 +1,147 @@
+package cscore;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>RecordFilter</code>
+ */
+public class RecordFilterTest extends TestCase {
+    private Record cheap;
+    private Record pricey;
+    private Record other;
+
+    @Override
+    protected void setUp() throws Exception {
+        cheap = new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30");
+        pricey = new Record("stb2|unbreakable|buena vista|2014-04-03|6.00|2:05");
+        other = new Record("stb3|the hobbit|hbo|2014-04-05|8.00|0:45");
+    }
+
+    public void testEquality() throws Exception {
+        // Setup
+        RecordFilter filter = RecordFilter.compile("PROVIDER=warner bros");
+        RecordFilter rev = RecordFilter.compile("REV=4");
+        // Test
+        assertTrue(filter.matches(cheap));
+        assertFalse(filter.matches(pricey));
+        assertTrue(rev.matches(cheap));
+        assertFalse(rev.matches(pricey));
+    }
+
+    public void testComparisons() throws Exception {
+        // Setup
+        RecordFilter greater = RecordFilter.compile("REV>4.00");
+        RecordFilter notEqual = RecordFilter.compile("STB!=stb1");
+        RecordFilter before = RecordFilter.compile("DATE<=2014-04-03");
+        RecordFilter shorter = RecordFilter.compile("VIEW_TIME<1:30");
+        // Test
+        assertFalse(greater.matches(cheap));
+        assertTrue(greater.matches(pricey));
+        assertFalse(notEqual.matches(cheap));
+        assertTrue(notEqual.matches(other));
+        assertTrue(before.matches(pricey));
+        assertFalse(before.matches(other));
+        assertTrue(shorter.matches(other));
+        assertFalse(shorter.matches(cheap));
+    }
+
+    public void testRangeAndIn() throws Exception {
+        // Setup
+        RecordFilter range = RecordFilter.compile("DATE=2014-04-02..2014-04-05");
+        RecordFilter in = RecordFilter.compile("PROVIDER IN (hbo, buena vista)");
+        // Test
+        assertFalse(range.matches(cheap));
+        assertTrue(range.matches(pricey));
+        assertTrue(range.matches(other));
+        assertFalse(in.matches(cheap));
+        assertTrue(in.matches(pricey));
+        assertTrue(in.matches(other));
+    }
+
+    public void testAndBindsTighterThanOr() throws Exception {
+        // Setup
+        RecordFilter filter = RecordFilter.compile("STB=stb1 OR REV>5 AND PROVIDER=hbo");
+        // Test
+        assertTrue(filter.matches(cheap));
+        assertFalse(filter.matches(pricey));
+        assertTrue(filter.matches(other));
+    }
+
+    public void testValuesWithKeywordsAndOperators() throws Exception {
+        // Setup
+        Record lost = new Record("stb4", "Lost IN Translation", "focus", "2014-04-02", 3.0, "1:42");
+        Record romeo = new Record("stb5", "Romeo AND Juliet", "a<b>c", "2014-04-02", 5.0, "2:00");
+        Record comma = new Record("stb6", "crouching tiger, hidden dragon", "sony!=fox", "2014-04-02", 5.0, "2:00");
+        // Call
+        RecordFilter in = RecordFilter.compile("TITLE=Lost IN Translation");
+        RecordFilter and = RecordFilter.compile("TITLE=Romeo AND Juliet AND REV>4");
+        RecordFilter operators = RecordFilter.compile("PROVIDER=a<b>c OR PROVIDER=sony!=fox");
+        RecordFilter quoted = RecordFilter.compile("TITLE IN ('crouching tiger, hidden dragon', \"Romeo AND Juliet\")");
+        RecordFilter escaped = RecordFilter.compile("TITLE='Romeo AND Juliet' AND PROVIDER=\"a<b>c\"");
+        // Test
+        assertTrue(in.matches(lost));
+        assertFalse(in.matches(romeo));
+        assertTrue(and.matches(romeo));
+        assertFalse(and.matches(lost));
+        assertTrue(operators.matches(romeo));
+        assertTrue(operators.matches(comma));
+        assertFalse(operators.matches(lost));
+        assertTrue(quoted.matches(comma));
+        assertTrue(quoted.matches(romeo));
+        assertFalse(quoted.matches(lost));
+        assertTrue(escaped.matches(romeo));
+        assertTrue(RecordFilter.compile("TITLE='it\\'s'").matches(
+                new Record("stb7", "it's", "hbo", "2014-04-02", 1.0, "1:00")));
+    }
+
+    public void testInvalid() throws Exception {
+        // Test
+        try {
+            RecordFilter.compile("REV>cheap");
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            RecordFilter.compile("COLOUR=red");
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testAndBeforeNonField() throws Exception {
+        // Setup
+        Record lowercase = new Record("stb4", "x AND rev>4", "hbo", "2014-04-02", 5.0, "1:00");
+        // Call
+        RecordFilter filter = RecordFilter.compile("TITLE=x AND rev>4");
+        // Test
+        assertTrue(filter.matches(lowercase));
+        assertFalse(filter.matches(pricey));
+        assertEquals("TITLE='x AND rev>4'", filter.toString());
+        try {
+            RecordFilter.compile("TITLE=x AND COLOUR=red");
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testCanonicalForm() throws Exception {
+        // Call
+        String spaced = RecordFilter.compile("REV>4  AND  STB=stb1").toString();
+        String single = RecordFilter.compile("REV>4 AND STB=\"stb1\"").toString();
+        String twoSpaces = RecordFilter.compile("TITLE='the  matrix'").toString();
+        String oneSpace = RecordFilter.compile("TITLE='the matrix'").toString();
+        String in = RecordFilter.compile("PROVIDER IN (hbo,'warner bros')").toString();
+        String reordered = RecordFilter.compile("PROVIDER IN ( \"warner bros\" , hbo )").toString();
+        // Test
+        assertEquals(spaced, single);
+        assertFalse(twoSpaces.equals(oneSpace));
+        assertEquals("TITLE='the  matrix'", twoSpaces);
+        assertEquals(in, reordered);
+    }
+}
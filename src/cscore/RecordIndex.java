@@ -0,0 +1,336 @@
+package cscore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Persistent map from a record's STB+TITLE+DATE key to the file and index it was exported to, so duplicates can still
+ * be routed to updates after a restart. The index is made of three files next to each other:
+ * <pre>
+ * .segments  the names of the exported files, one per line, the line number is the segment id
+ * .entries   append only list of key, segment id and slot entries
+ * .table     memory mapped open addressing hash table of key hash and entry offset
+ * </pre>
+ * Opening the index only maps the table, entries are read when a lookup lands on them. If the table doesn't cover
+ * every entry (a crash before <code>flush</code>) it is rebuilt from the entries, and an entry a crash cut off or
+ * that names a segment that was never saved is dropped along with everything after it. A new segment name is forced
+ * to disk before any entry uses it.
+ */
+public class RecordIndex implements Closeable {
+    private static final int TABLE_HEADER = 16;
+    private static final int TABLE_SLOT = 16;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final String tableName;
+    private final String segmentsName;
+    private final FileChannel entries;
+    private final List<String> segments = new ArrayList<>();
+    private final HashMap<String, Integer> segmentIds = new HashMap<>();
+    private MappedByteBuffer table;
+    private int capacity;
+    private int size;
+    private long entriesLength;
+
+    /**
+     * Opens the index, creating it if it doesn't exist
+     * @param filename the base name of the index files
+     * @throws IOException if the index cannot be opened
+     */
+    public RecordIndex(String filename) throws IOException {
+        this.tableName = filename + ".table";
+        this.segmentsName = filename + ".segments";
+        entries = FileChannel.open(Paths.get(filename + ".entries"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        entriesLength = entries.size();
+
+        if (new File(segmentsName).exists()) {
+            byte[] bytes = Files.readAllBytes(Paths.get(segmentsName));
+            int end = bytes.length;
+            while (end > 0 && bytes[end - 1] != '\n') {
+                end--;
+            }
+            if (end < bytes.length) {
+                // a name cut off by a crash was never used by an entry
+                try (FileChannel channel = FileChannel.open(Paths.get(segmentsName), StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                }
+            }
+            for (String segment : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\n")) {
+                if (!segment.isEmpty()) {
+                    segmentIds.put(segment, segments.size());
+                    segments.add(segment);
+                }
+            }
+        }
+
+        if (new File(tableName).exists()) {
+            table = mapTable(tableName, -1);
+            capacity = table.getInt(8);
+            size = table.getInt(12);
+            if (table.getLong(0) != entriesLength) {
+                rebuild();
+            }
+        }
+        else {
+            table = mapTable(tableName, INITIAL_CAPACITY);
+            capacity = INITIAL_CAPACITY;
+            rebuild();
+        }
+    }
+
+    /**
+     * @param key the record key to look up
+     * @return where the record was exported to or null if it hasn't been exported
+     * @throws IOException if the entries cannot be read
+     */
+    public Records.Location get(RecordKey key) throws IOException {
+        byte[] encoded = encode(key);
+        int hash = hash(encoded);
+        int mask = capacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            long offset = table.getLong(slotOffset(slot)) - 1;
+            if (offset < 0) {
+                return null;
+            }
+            if (table.getInt(slotOffset(slot) + 8) != hash) {
+                continue;
+            }
+            ByteBuffer entry = readEntry(offset);
+            int length = entry.getInt(0);
+            if (length == encoded.length && Arrays.equals(Arrays.copyOfRange(entry.array(), 4, 4 + length), encoded)) {
+                return new Records.Location(segments.get(entry.getInt(4 + length)), entry.getInt(8 + length));
+            }
+        }
+    }
+
+    /**
+     * @param filename the name of an exported file
+     * @return true if the index has records in the file
+     */
+    public boolean references(String filename) {
+        return segmentIds.containsKey(filename);
+    }
+
+    /**
+     * Records where a key was exported to, replacing any earlier location
+     * @param key the record key
+     * @param location the file and index of the record
+     * @throws IOException if the entry cannot be written
+     */
+    public void put(RecordKey key, Records.Location location) throws IOException {
+        Integer segment = segmentIds.get(location.filename);
+        if (segment == null) {
+            segment = segments.size();
+            segments.add(location.filename);
+            segmentIds.put(location.filename, segment);
+            try (FileChannel channel = FileChannel.open(Paths.get(segmentsName), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer line = ByteBuffer.wrap((location.filename + "\n").getBytes(StandardCharsets.UTF_8));
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+                // entries must never reach the disk before the segment they refer to
+                channel.force(true);
+            }
+        }
+
+        byte[] encoded = encode(key);
+        ByteBuffer entry = ByteBuffer.allocate(12 + encoded.length);
+        entry.putInt(encoded.length);
+        entry.put(encoded);
+        entry.putInt(segment);
+        entry.putInt(location.index);
+        entry.flip();
+        long offset = entriesLength;
+        while (entry.hasRemaining()) {
+            entries.write(entry, offset + entry.position());
+        }
+        entriesLength += entry.limit();
+
+        insert(hash(encoded), offset, encoded);
+        table.putLong(0, entriesLength);
+    }
+
+    /**
+     * Forces the entries and the table to disk
+     * @throws IOException if the sync fails
+     */
+    public void flush() throws IOException {
+        entries.force(false);
+        table.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        entries.close();
+    }
+
+    /**
+     * Puts an entry into the table, replacing the slot of an entry with the same key
+     */
+    private void insert(int hash, long offset, byte[] encoded) throws IOException {
+        if ((size + 1) * 2 > capacity) {
+            grow();
+        }
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        while (true) {
+            long existing = table.getLong(slotOffset(slot)) - 1;
+            if (existing < 0) {
+                size++;
+                table.putInt(12, size);
+                break;
+            }
+            if (table.getInt(slotOffset(slot) + 8) == hash && encoded != null) {
+                ByteBuffer entry = readEntry(existing);
+                int length = entry.getInt(0);
+                if (length == encoded.length
+                        && Arrays.equals(Arrays.copyOfRange(entry.array(), 4, 4 + length), encoded)) {
+                    break;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        table.putLong(slotOffset(slot), offset + 1);
+        table.putInt(slotOffset(slot) + 8, hash);
+    }
+
+    /**
+     * Doubles the table, re-inserting the slots from the old table without reading any entries
+     */
+    private void grow() throws IOException {
+        MappedByteBuffer old = table;
+        int oldCapacity = capacity;
+        String temp = tableName + ".tmp";
+        table = mapTable(temp, oldCapacity * 2);
+        capacity = oldCapacity * 2;
+        size = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long offset = old.getLong(slotOffset(slot)) - 1;
+            if (offset >= 0) {
+                // keys in the old table are already unique so there is no need to compare them
+                insert(old.getInt(slotOffset(slot) + 8), offset, null);
+            }
+        }
+        table.putLong(0, entriesLength);
+        table.force();
+        Files.move(Paths.get(temp), Paths.get(tableName), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Clears the table and inserts every entry again. The entries are truncated at the first one that is incomplete
+     * or refers to an unknown segment, which is what a crash in the middle of <code>put</code> leaves behind.
+     */
+    private void rebuild() throws IOException {
+        for (int slot = 0; slot < capacity; slot++) {
+            table.putLong(slotOffset(slot), 0);
+        }
+        size = 0;
+        long offset = 0;
+        while (offset < entriesLength) {
+            int length = completeEntryLength(offset);
+            if (length < 0) {
+                System.out.println("Error: index entries from offset " + offset + " were cut off and are dropped");
+                entries.truncate(offset);
+                entriesLength = offset;
+                break;
+            }
+            ByteBuffer entry = readEntry(offset);
+            byte[] encoded = Arrays.copyOfRange(entry.array(), 4, 4 + length);
+            insert(hash(encoded), offset, encoded);
+            offset += 12 + length;
+        }
+        table.putLong(0, entriesLength);
+        flush();
+    }
+
+    /**
+     * @return the key length of the entry at the offset or -1 if the entry is cut off or its segment is unknown
+     */
+    private int completeEntryLength(long offset) throws IOException {
+        if (offset + 4 > entriesLength) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, offset);
+        int length = header.getInt(0);
+        if (length < 0 || offset + 12 + length > entriesLength) {
+            return -1;
+        }
+        ByteBuffer segment = ByteBuffer.allocate(4);
+        readFully(segment, offset + 4 + length);
+        int id = segment.getInt(0);
+        return id >= 0 && id < segments.size() ? length : -1;
+    }
+
+    private ByteBuffer readEntry(long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(length, offset);
+        ByteBuffer entry = ByteBuffer.allocate(12 + length.getInt(0));
+        readFully(entry, offset);
+        return entry;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (entries.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Index entry at " + offset + " is cut off");
+            }
+        }
+    }
+
+    /**
+     * Maps a table file, creating it with the given capacity or using the existing size if capacity is -1
+     */
+    private static MappedByteBuffer mapTable(String filename, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long length = capacity < 0 ? channel.size() : TABLE_HEADER + (long) capacity * TABLE_SLOT;
+        if (capacity >= 0) {
+            channel.truncate(0);
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        channel.close();
+        if (capacity >= 0) {
+            mapped.putInt(8, capacity);
+        }
+        return mapped;
+    }
+
+    private static int slotOffset(int slot) {
+        return TABLE_HEADER + slot * TABLE_SLOT;
+    }
+
+    /**
+     * The hash is taken over the encoded key so the table can be rebuilt from the entries alone
+     */
+    private static int hash(byte[] encoded) {
+        int h = Arrays.hashCode(encoded);
+        return h ^ (h >>> 16);
+    }
+
+    private static byte[] encode(RecordKey key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(key.getStb());
+        out.writeUTF(key.getTitle());
+        out.writeInt(key.getEpochDay());
+        return bytes.toByteArray();
+    }
+}
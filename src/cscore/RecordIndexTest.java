@@ -0,0 +1,160 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.RandomAccessFile;
+
+/**
+ * Tests for <code>RecordIndex</code>
+ */
+public class RecordIndexTest extends TestCase {
+    private static final String NAME = "TempIndex";
+
+    private void deleteIndex() {
+        new File(NAME + ".table").delete();
+        new File(NAME + ".entries").delete();
+        new File(NAME + ".segments").delete();
+    }
+
+    public void testPutGet() throws Exception {
+        // Setup
+        deleteIndex();
+        RecordIndex index = new RecordIndex(NAME);
+        RecordKey key = new RecordKey("stb1", "the matrix", 16161);
+        // Call
+        index.put(key, new Records.Location("export0", 7));
+        Records.Location found = index.get(new RecordKey("stb1", "the matrix", 16161));
+        // Test
+        assertEquals("export0", found.filename);
+        assertEquals(7, found.index);
+        assertNull(index.get(new RecordKey("stb1", "the matrix", 16162)));
+        index.close();
+        // Cleanup
+        deleteIndex();
+    }
+
+    public void testReopen() throws Exception {
+        // Setup
+        deleteIndex();
+        RecordIndex index = new RecordIndex(NAME);
+        for (int i = 0; i < 100000; i++) {
+            index.put(new RecordKey("stb" + i, "title", 16161), new Records.Location("export" + i % 10, i));
+        }
+        index.close();
+        // Call
+        RecordIndex reopened = new RecordIndex(NAME);
+        // Test
+        Records.Location found = reopened.get(new RecordKey("stb99999", "title", 16161));
+        assertEquals("export9", found.filename);
+        assertEquals(99999, found.index);
+        reopened.close();
+        // Cleanup
+        deleteIndex();
+    }
+
+    public void testReopenAfterTornEntry() throws Exception {
+        // Setup
+        deleteIndex();
+        RecordIndex index = new RecordIndex(NAME);
+        index.put(new RecordKey("stb1", "the matrix", 16161), new Records.Location("export0", 1));
+        index.put(new RecordKey("stb2", "the matrix", 16161), new Records.Location("export0", 2));
+        index.close();
+        long length = new File(NAME + ".entries").length();
+        try (RandomAccessFile entries = new RandomAccessFile(NAME + ".entries", "rw")) {
+            // a third entry cut off half way through its key, and a segment name cut off before its newline
+            entries.seek(length);
+            entries.writeInt(40);
+            entries.write(new byte[10]);
+        }
+        try (FileWriter segments = new FileWriter(NAME + ".segments", true)) {
+            segments.write("expo");
+        }
+        // Call
+        RecordIndex reopened = new RecordIndex(NAME);
+        long truncated = new File(NAME + ".entries").length();
+        reopened.put(new RecordKey("stb3", "the matrix", 16161), new Records.Location("export1", 3));
+        reopened.close();
+        RecordIndex again = new RecordIndex(NAME);
+        // Test
+        assertEquals(2, again.get(new RecordKey("stb2", "the matrix", 16161)).index);
+        assertEquals("export1", again.get(new RecordKey("stb3", "the matrix", 16161)).filename);
+        assertFalse(again.references("expo"));
+        assertEquals(length, truncated);
+        again.close();
+        // Cleanup
+        deleteIndex();
+    }
+
+    public void testDedupAfterRestart() throws Exception {
+        // Setup
+        deleteIndex();
+        Records records = new Records();
+        records.enableIndex(NAME);
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.exportToSegment("TempIndexSegment0");
+        records.close();
+        // Call
+        Records restarted = new Records();
+        restarted.enableIndex(NAME);
+        restarted.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|5.00|1:30"));
+        restarted.exportToSegment("TempIndexSegment1");
+        restarted.close();
+        // Test
+        SegmentReader first = new SegmentReader("TempIndexSegment0");
+        SegmentReader second = new SegmentReader("TempIndexSegment1");
+        assertEquals(5.0, first.getRecord(0).getRev());
+        assertEquals(0, second.getCount());
+        first.close();
+        second.close();
+        // Cleanup
+        deleteIndex();
+        new File("TempIndexSegment0").delete();
+        new File("TempIndexSegment1").delete();
+        new File("TempIndexSegment0" + SegmentStats.SUFFIX).delete();
+        new File("TempIndexSegment1" + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testImportAfterRestartKeepsEarlierExports() throws Exception {
+        // Setup
+        deleteIndex();
+        String name = "TempIndexImport";
+        FileWriter writer = new FileWriter(name);
+        writer.write("stb1|the matrix|warner bros|2014-04-01|4.00|1:30\n");
+        writer.write("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45\n");
+        writer.close();
+        Records records = new Records();
+        records.setMaxRecords(2);
+        records.setJsonName(name);
+        records.setExportFormat(Records.ExportFormat.SEGMENT);
+        records.enableIndex(NAME);
+        records.importFromFile(name);
+        records.close();
+        // Call
+        writer = new FileWriter(name);
+        writer.write("stb1|the matrix|warner bros|2014-04-01|5.00|1:30\n");
+        writer.write("stb3|unbreakable|buena vista|2014-04-03|6.00|2:05\n");
+        writer.close();
+        Records restarted = new Records();
+        restarted.setMaxRecords(2);
+        restarted.setJsonName(name);
+        restarted.setExportFormat(Records.ExportFormat.SEGMENT);
+        restarted.enableIndex(NAME);
+        restarted.importFromFile(name);
+        restarted.close();
+        // Test
+        SegmentReader first = new SegmentReader(name + "0");
+        assertEquals(1, first.getCount());
+        assertEquals("stb1", first.getRecord(0).getStb());
+        // the duplicate from the second run updated the first file instead of a new export replacing it
+        assertEquals(5.0, first.getRecord(0).getRev());
+        first.close();
+        assertTrue(new File(name + "1").exists());
+        // Cleanup
+        deleteIndex();
+        for (String file : new String[]{name, name + "0", name + "1"}) {
+            new File(file).delete();
+            new File(file + SegmentStats.SUFFIX).delete();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package cscore;
+
+/**
+ * Identifies a unique record by its STB, TITLE and DATE. Records with the same key overwrite each other. The fields
+ * are compared separately so "ab"+"c" and "a"+"bc" are different keys, and the hash is computed once up front.
+ */
+public final class RecordKey {
+    private final String stb;
+    private final String title;
+    private final int epochDay;
+    private final int hash;
+
+    /**
+     * @param stb the set top box id
+     * @param title the title of the media asset
+     * @param epochDay the date as the number of days since 1970-01-01
+     */
+    public RecordKey(String stb, String title, int epochDay) {
+        this.stb = stb;
+        this.title = title;
+        this.epochDay = epochDay;
+        this.hash = 31 * (31 * stb.hashCode() + title.hashCode()) + epochDay;
+    }
+
+    public String getStb() {
+        return stb;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecordKey)) {
+            return false;
+        }
+        RecordKey other = (RecordKey) o;
+        return hash == other.hash && epochDay == other.epochDay && stb.equals(other.stb) && title.equals(other.title);
+    }
+
+    @Override
+    public String toString() {
+        return stb + "|" + title + "|" + epochDay;
+    }
+}
@@ -0,0 +1,34 @@
+package cscore;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>RecordKey</code>
+ */
+public class RecordKeyTest extends TestCase {
+
+    public void testEquals() throws Exception {
+        // Setup
+        Record record1 = new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30");
+        Record record2 = new Record("stb1|the matrix|hbo|2014-04-01|5.00|2:30");
+        // Test
+        assertEquals(record1.getRecordKey(), record2.getRecordKey());
+        assertEquals(record1.getRecordKey().hashCode(), record2.getRecordKey().hashCode());
+    }
+
+    public void testDifferentDate() throws Exception {
+        // Setup
+        Record record1 = new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30");
+        Record record2 = new Record("stb1|the matrix|warner bros|2014-04-02|4.00|1:30");
+        // Test
+        assertFalse(record1.getRecordKey().equals(record2.getRecordKey()));
+    }
+
+    public void testNoConcatenationCollision() throws Exception {
+        // Setup
+        RecordKey key1 = new RecordKey("ab", "c", 16161);
+        RecordKey key2 = new RecordKey("a", "bc", 16161);
+        // Test
+        assertFalse(key1.equals(key2));
+    }
+}
@@ -0,0 +1,276 @@
+package cscore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Parses lines in the STB|TITLE|PROVIDER|DATE|REV|VIEW_TIME format into <code>Record</code>s. The line is scanned in
+ * place instead of being split with a regex, and the date, time and revenue are parsed by hand. A parser keeps its
+ * scratch buffers between calls so it is not thread safe, {@link #get()} returns the parser for the current thread.
+ */
+public class RecordParser {
+    private static final ThreadLocal<RecordParser> PARSERS = ThreadLocal.withInitial(RecordParser::new);
+    private static final int FIELDS = 6;
+    private static final int STB = 0, TITLE = 1, PROVIDER = 2, DATE = 3, REV = 4, VIEW_TIME = 5;
+    // Any mantissa with 15 digits or less and its power of ten are exact doubles, so dividing them rounds the same
+    // way Double.valueOf does
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    // the most recent value seen for each hash, so repeated values are found without building a String
+    private static final int RECENT_SIZE = 4096;
+
+    private char[] buffer = new char[256];
+    private final String[] recent = new String[RECENT_SIZE];
+    private final int[] starts = new int[FIELDS];
+    private final int[] ends = new int[FIELDS];
+
+    /**
+     * @return the parser belonging to the current thread
+     */
+    public static RecordParser get() {
+        return PARSERS.get();
+    }
+
+    /**
+     * Parses a single line into a new <code>Record</code>
+     * @param line the string to be parsed
+     * @return the parsed record
+     * @throws ParseException if the line does not have six fields or any of the fields are invalid
+     */
+    public Record parse(String line) throws ParseException {
+        int length = line.length();
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        line.getChars(0, length, buffer, 0);
+        return parseBuffer(length);
+    }
+
+    /**
+     * Parses a single line stored as UTF-8 bytes without first turning it into a String
+     * @param bytes the buffer holding the line, for example a memory mapped file
+     * @param start the index of the first byte of the line
+     * @param end the index after the last byte of the line, not including the line separator
+     * @return the parsed record
+     * @throws ParseException if the line does not have six fields or any of the fields are invalid
+     */
+    public Record parse(ByteBuffer bytes, int start, int end) throws ParseException {
+        int length = end - start;
+        if (buffer.length < length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = bytes.get(start + i);
+            // fall back to a full decode for anything outside of ascii
+            if (b < 0) {
+                return parse(decode(bytes, start, end));
+            }
+            buffer[i] = (char) b;
+        }
+        return parseBuffer(length);
+    }
+
+    /**
+     * @return the UTF-8 bytes between start and end as a String
+     */
+    public static String decode(ByteBuffer bytes, int start, int end) {
+        byte[] line = new byte[end - start];
+        ByteBuffer view = bytes.duplicate();
+        view.position(start);
+        view.get(line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Splits the first <code>length</code> characters of the buffer on '|' and builds the record from the fields
+     */
+    protected Record parseBuffer(int length) throws ParseException {
+        tokenize(length);
+
+        LocalDate date = parseDate(starts[DATE], ends[DATE]);
+        LocalTime time = parseTime(starts[VIEW_TIME], ends[VIEW_TIME]);
+        double rev = parseRev(starts[REV], ends[REV]);
+
+        return new Record(field(STB), field(TITLE), field(PROVIDER), LocalDateTime.of(date, time), rev);
+    }
+
+    /**
+     * Records the bounds of the six fields. Like String.split trailing empty fields are ignored.
+     */
+    private void tokenize(int length) throws ParseException {
+        int field = 0;
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (buffer[i] == '|') {
+                if (field == FIELDS - 1) {
+                    // only separators are allowed after the last field
+                    for (int j = i; j < length; j++) {
+                        if (buffer[j] != '|') {
+                            throw new ParseException("Expected " + FIELDS + " fields", j);
+                        }
+                    }
+                    break;
+                }
+                starts[field] = start;
+                ends[field] = i;
+                field++;
+                start = i + 1;
+            }
+        }
+        if (field != FIELDS - 1) {
+            throw new ParseException("Expected " + FIELDS + " fields", length);
+        }
+        starts[field] = start;
+        ends[field] = length;
+        for (int j = start; j < length; j++) {
+            if (buffer[j] == '|') {
+                ends[field] = j;
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the value of a field, the canonical instance from <code>StringPool</code> for TITLE and PROVIDER. Values
+     * this parser has seen recently are matched against the buffer so only new values allocate a String.
+     */
+    private String field(int field) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (RECENT_SIZE - 1);
+        String cached = recent[slot];
+        if (cached != null && cached.hashCode() == hash && matches(cached, start, length)) {
+            return cached;
+        }
+        String value = new String(buffer, start, length);
+        if (field != STB) {
+            value = StringPool.intern(value);
+        }
+        recent[slot] = value;
+        return value;
+    }
+
+    private boolean matches(String value, int start, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a date in the yyyy-MM-dd format. A day past the end of the month is moved back to the last day of the
+     * month, the same as the smart resolver the date formatter uses.
+     */
+    private LocalDate parseDate(int start, int end) throws ParseException {
+        if (end - start != 10 || buffer[start + 4] != '-' || buffer[start + 7] != '-') {
+            throw invalidDate(start, end);
+        }
+        int year = digits(start, start + 4);
+        int month = digits(start + 5, start + 7);
+        int day = digits(start + 8, start + 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            throw invalidDate(start, end);
+        }
+        int lastDay = LocalDate.of(year, month, 1).lengthOfMonth();
+        return LocalDate.of(year, month, Math.min(day, lastDay));
+    }
+
+    /**
+     * Parses a time in the k:mm format. The hour can be from 0 to 24 where 24 is the same as 0.
+     */
+    private LocalTime parseTime(int start, int end) throws ParseException {
+        int colon = end - 3;
+        if (colon <= start || buffer[colon] != ':') {
+            throw invalidDate(start, end);
+        }
+        int hour = digits(start, colon);
+        int minute = digits(colon + 1, end);
+        if (hour < 0 || hour > 24 || minute < 0 || minute > 59) {
+            throw invalidDate(start, end);
+        }
+        return LocalTime.of(hour == 24 ? 0 : hour, minute);
+    }
+
+    /**
+     * Parses plain decimals by hand and hands anything else (exponents, long mantissas...) to Double.parseDouble
+     */
+    private double parseRev(int start, int end) throws ParseException {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            }
+            else if (c == '.' && scale < 0) {
+                scale = 0;
+            }
+            else {
+                break;
+            }
+        }
+        if (i == end && digits > 0 && digits <= MAX_FAST_DIGITS) {
+            double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return negative ? -value : value;
+        }
+
+        String rev = new String(buffer, start, end - start);
+        try {
+            return Double.parseDouble(rev);
+        }
+        catch (NumberFormatException nfe) {
+            throw new ParseException(rev + " is not a valid revenue", start);
+        }
+    }
+
+    /**
+     * @return the value of the digits between start and end or -1 if there are none or any other characters
+     */
+    private int digits(int start, int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = buffer[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private ParseException invalidDate(int start, int end) {
+        return new ParseException(new String(buffer, starts[DATE], ends[DATE] - starts[DATE]) + " "
+                + new String(buffer, starts[VIEW_TIME], ends[VIEW_TIME] - starts[VIEW_TIME])
+                + " is not a valid date/time", start);
+    }
+}
@@ -0,0 +1,77 @@
+package cscore;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for <code>RecordParser</code>
+ */
+public class RecordParserTest extends TestCase {
+
+    public void testParse() throws Exception {
+        // Setup
+        String data = "stb1|the matrix|warner bros|2014-04-01|4.00|1:30";
+        // Call
+        Record record = RecordParser.get().parse(data);
+        // Test
+        assertEquals("stb1", record.getStb());
+        assertEquals("the matrix", record.getTitle());
+        assertEquals("warner bros", record.getProvider());
+        assertEquals("2014-04-01", record.getDate());
+        assertEquals(4.0, record.getRev());
+        assertEquals("1:30", record.getViewTime());
+    }
+
+    public void testParseMatchesLegacyRev() throws Exception {
+        // Setup
+        String[] revs = {"4.00", "0.1", "19.99", "-2.5", ".5", "7.", "1e3", "0.0001", "1234567.8912345678"};
+        for (String rev : revs) {
+            // Call
+            Record record = RecordParser.get().parse("stb1|title|provider|2014-04-01|" + rev + "|1:30");
+            // Test
+            assertEquals(Double.valueOf(rev), record.getRev());
+        }
+    }
+
+    public void testParseEndOfMonth() throws Exception {
+        // Setup
+        String data = "stb1|the matrix|warner bros|2014-02-30|4.00|24:00";
+        // Call
+        Record record = RecordParser.get().parse(data);
+        // Test
+        assertEquals("2014-02-28", record.getDate());
+        assertEquals("24:00", record.getViewTime());
+    }
+
+    public void testParseTrailingSeparator() throws Exception {
+        // Setup
+        String data = "stb1|the matrix|warner bros|2014-04-01|4.00|1:30|";
+        // Call
+        Record record = RecordParser.get().parse(data);
+        // Test
+        assertEquals("1:30", record.getViewTime());
+    }
+
+    public void testParseInvalid() throws Exception {
+        // Setup
+        String[] data = {
+                "stb1|the matrix|warner bros|2014-04-01|4.00",
+                "stb1|the matrix|warner bros|2014-04-01|4.00|1:30|extra",
+                "stb1|the matrix|warner bros|224-04-01|4.00|1:30",
+                "stb1|the matrix|warner bros|2014-13-01|4.00|1:30",
+                "stb1|the matrix|warner bros|2014-04-01|4.00|128:30",
+                "stb1|the matrix|warner bros|2014-04-01|4.00|1:3",
+                "stb1|the matrix|warner bros|2014-04-01|four|1:30"
+        };
+        for (String line : data) {
+            // Call
+            try {
+                RecordParser.get().parse(line);
+                fail(line + " should not parse");
+            }
+            catch (java.text.ParseException e) {
+                // Test
+                assertTrue(e.getErrorOffset() >= 0 && e.getErrorOffset() <= line.length());
+            }
+        }
+    }
+}
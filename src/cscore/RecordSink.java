@@ -0,0 +1,14 @@
+package cscore;
+
+/**
+ * Receives records one at a time as they are read
+ */
+public interface RecordSink {
+
+    /**
+     * @param record the next record
+     * @return true to keep reading, false to stop
+     * @throws Exception if the record cannot be handled
+     */
+    boolean accept(Record record) throws Exception;
+}
@@ -1,3 +1,5 @@
+package cscore;
+
 import junit.framework.TestCase;
 
 /**
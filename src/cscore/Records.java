@@ -0,0 +1,1016 @@
+package cscore;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import java.io.FileWriter;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+
+/**
+ * Manages a set of Records. Any record with the same STB, TITLE, and DATE will be overwritten by the
+ * most recent record. Stores the records in a JSON file for archiving.
+ */
+
+public class Records {
+    private final String JSONFILE = "data.json";
+    private HashMap<RecordKey, Record> records = new HashMap<>();
+    private HashMap<RecordKey, Location> recordMappings = new HashMap<>();
+    private int maxRecords = 1000;
+    private int recordCount = 0;
+    private int exportNumber = 0;
+    private String jsonName = "export";
+    private int chunkSize = 8 * 1024 * 1024;
+    private ExportFormat exportFormat = ExportFormat.JSON;
+    private WriteAheadLog log = null;
+    private RecordIndex index = null;
+    private boolean secondaryIndexes = false;
+    private boolean manifest = false;
+    private String versionFile = null;
+    private Thread flusher = null;
+    private ArrayBlockingQueue<Batch> flushQueue;
+    // the first export the flusher failed on, reported by awaitExports or close
+    private volatile IOException flushFailure = null;
+    private static final Batch STOP = new Batch(null, null);
+
+    /**
+     * A full set of records waiting to be exported by the flusher. A batch without records is a marker that is only
+     * used to wait for the batches ahead of it.
+     */
+    private static class Batch {
+        final Map<RecordKey, Record> records;
+        final String filename;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Batch(Map<RecordKey, Record> records, String filename) {
+            this.records = records;
+            this.filename = filename;
+        }
+    }
+
+    /**
+     * The file formats records can be exported to
+     */
+    public enum ExportFormat {
+        JSON,
+        SEGMENT,
+        COMPRESSED_SEGMENT
+    }
+
+    /**
+     * Object to store a records location. Locations sort by file and then by index so updates can be grouped by file.
+      */
+    public static class Location implements Comparable<Location> {
+       String filename;
+       int index;
+
+       public Location(String filename, int index) {
+           this.filename = filename;
+           this.index = index;
+       }
+
+       @Override
+       public int compareTo(Location other) {
+           int compare = filename.compareTo(other.filename);
+           return compare != 0 ? compare : Integer.compare(index, other.index);
+       }
+   }
+
+    /**
+     * Class to store a record needing to be updated
+     */
+    public static class RecordUpdate extends Location {
+        Record record;
+
+        public RecordUpdate(Location location, Record record) {
+            super(location.filename, location.index);
+            this.record = record;
+        }
+    }
+
+    /**
+     * Sets the max number of records to add before exporting to a file
+     * @param max record count per file
+     */
+    public void setMaxRecords( int max) {
+        this.maxRecords = max;
+    }
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * sets the default name for json exports
+     * @param name file name to export
+     */
+    public void setJsonName(String name){
+        this.jsonName = name;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+
+    /**
+     * Sets the format used when records are exported during an import
+     * @param format the export file format
+     */
+    public void setExportFormat(ExportFormat format) {
+        this.exportFormat = format;
+    }
+
+    /**
+     * Logs every added record to a write ahead log so records that haven't been exported yet survive a crash. Any
+     * records already in the log are replayed into <code>Records</code> first.
+     * @param filename the name of the log file
+     * @throws IOException if the log cannot be opened or replayed
+     */
+    public void enableWriteAheadLog(String filename) throws IOException {
+        if (isAsyncExport()) {
+            throw new IllegalStateException("The write ahead log cannot be used with asynchronous exports");
+        }
+        WriteAheadLog wal = new WriteAheadLog(filename);
+        wal.replay(this::addRecord);
+        this.log = wal;
+    }
+
+    /**
+     * Keeps the record locations in a persistent index instead of only in memory so records exported before a
+     * restart are still updated in place rather than added again.
+     * @param filename the base name of the index files
+     * @throws IOException if the index cannot be opened
+     */
+    public void enableIndex(String filename) throws IOException {
+        this.index = new RecordIndex(filename);
+    }
+
+    /**
+     * Writes a <code>SecondaryIndex</code> on STB, TITLE and PROVIDER next to every exported file so queries with an
+     * equality filter only read the matching records
+     */
+    public void enableSecondaryIndexes() {
+        this.secondaryIndexes = true;
+    }
+
+    /**
+     * Adds every exported file to the <code>SegmentManifest</code> so a <code>Query</code> reads all of them. Without
+     * it the manifest is left alone and a query only reads data.seg or data.json.
+     */
+    public void enableManifest() {
+        this.manifest = true;
+    }
+
+    /**
+     * Bumps the data version in a file after every export and update, see <code>QueryCache</code>. A cached query
+     * result or a <code>QueryServer</code> then notices an update even if it left the size and modified time of the
+     * file alone. A <code>Query</code> reads the version from <code>QueryCache.VERSION_FILE</code>.
+     * @param filename the version file
+     */
+    public void enableDataVersion(String filename) {
+        this.versionFile = filename;
+    }
+
+    /**
+     * Exports on a background thread instead of the importing thread. When a batch is full it is handed to the
+     * flusher and importing continues with an empty batch. Batches are exported one at a time in the order they
+     * were filled so duplicates are still found in earlier files. If <code>maxPending</code> batches are already
+     * waiting the import blocks until the flusher catches up. While this is enabled use <code>export</code>,
+     * <code>awaitExports</code> and <code>close</code> rather than exporting directly.
+     * @param maxPending the number of full batches that can wait to be exported
+     */
+    public void enableAsyncExport(int maxPending) {
+        if (isLogged()) {
+            throw new IllegalStateException("Asynchronous exports cannot be used with the write ahead log");
+        }
+        if (flusher != null) {
+            return;
+        }
+        flushQueue = new ArrayBlockingQueue<>(maxPending);
+        flusher = new Thread(this::flushBatches, "records-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Exports batches from the queue until it is stopped
+     */
+    private void flushBatches() {
+        while (true) {
+            Batch batch;
+            try {
+                batch = flushQueue.take();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            if (batch == STOP) {
+                return;
+            }
+            if (batch.records != null) {
+                try {
+                    exportBatch(batch.records, batch.filename);
+                }
+                catch (Exception e) {
+                    System.out.println("Error: could not export '" + batch.filename + "'");
+                    if (flushFailure == null) {
+                        flushFailure = new IOException("Could not export '" + batch.filename + "'", e);
+                    }
+                }
+            }
+            batch.done.countDown();
+        }
+    }
+
+    /**
+     * Waits until every batch handed to the flusher has been exported
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IOException if a batch could not be exported, the first failure since the last one was reported
+     */
+    public void awaitExports() throws InterruptedException, IOException {
+        if (flusher == null) {
+            return;
+        }
+        // batches are exported in order so once the marker is done all earlier ones are too
+        Batch marker = new Batch(null, null);
+        flushQueue.put(marker);
+        marker.done.await();
+        throwFlushFailure();
+    }
+
+    /**
+     * Throws the first export the flusher failed on, if there was one, and forgets it
+     */
+    private void throwFlushFailure() throws IOException {
+        IOException failure = flushFailure;
+        if (failure != null) {
+            flushFailure = null;
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops the flusher after it has exported every waiting batch, commits and closes the write ahead log if
+     * there is one and closes the index
+     * @throws IOException if the final commit fails or a batch could not be exported
+     */
+    public void close() throws IOException {
+        if (flusher != null) {
+            try {
+                flushQueue.put(STOP);
+                flusher.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+        if (index != null) {
+            index.close();
+            index = null;
+        }
+        throwFlushFailure();
+    }
+
+    /**
+     * Sets the number of bytes each thread parses at a time during a parallel import. Chunks are extended to the
+     * end of the line so a chunk can be larger than this.
+     * @param bytes the target chunk size
+     */
+    public void setChunkSize(int bytes) {
+        this.chunkSize = bytes;
+    }
+
+    /**
+     * Adds the <code>Record</code> to <code>Records</code>. Uses the record's STB+TITLE+DATE key
+     * to ensure that each record is unique. If the key already exits in records the record in records
+     * will be overwritten.
+     * @param record the data to add
+     */
+    public void addRecord(Record record) {
+        if (log != null) {
+            try {
+                log.append(record);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (records.put(record.getRecordKey(), record) != null) {
+            Metrics.increment(Metrics.Counter.DUPLICATES_OVERWRITTEN);
+        }
+        recordCount++;
+    }
+
+    /**
+     * @return the total number if unique records
+     */
+    public int getCount() {
+        return records.size();
+    }
+
+    /**
+     * Imports all records in a given file into the hashmap. Records with duplicate keys will be overwritten subsequent
+     * records. If there is any issue opening the file an error will be printed and the task will terminate gracefully.
+     * If there is any issue parsing a record, the record will be printed, skipped, and the import will continue.
+     * @param filename the name of the file to import from.
+     */
+    public void importFromFile(String filename){
+        RecordParser parser = RecordParser.get();
+        File file;
+        Scanner reader;
+
+        // Open the file and throw an exception if there is any issue
+        try {
+            file = new File(filename);
+            reader = new Scanner(file);
+        }
+        catch (IOException e) {
+            System.out.println("Error: could not open file '" + filename + "'");
+            return;
+        }
+        long start = Metrics.start();
+        while(reader.hasNextLine()){
+            String line = reader.nextLine();
+            Metrics.increment(Metrics.Counter.LINES_READ);
+            try {
+                importRecord(parser.parse(line));
+            }
+            catch (Exception e) {
+                Metrics.increment(Metrics.Counter.PARSE_FAILURES);
+                System.out.println("Error: Record could not be parsed '" + line + "'");
+                continue;
+            }
+        }
+        reader.close();
+        if (Metrics.ENABLED) {
+            Metrics.add(Metrics.Counter.BYTES_READ, file.length());
+        }
+        Metrics.stop(Metrics.Timer.IMPORT, start);
+
+    }
+
+    /**
+     * Imports all records in a given file the same way as <code>importFromFile</code> but parses the file on all
+     * cores. The file is memory mapped and split into chunks that end on a line break, the chunks are parsed on the
+     * fork join pool and then added in file order so duplicate keys are still overwritten by the later record.
+     * @param filename the name of the file to import from.
+     */
+    public void importFromFileParallel(String filename){
+        FileChannel channel;
+
+        // Open the file and throw an exception if there is any issue
+        try {
+            channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        }
+        catch (IOException e) {
+            System.out.println("Error: could not open file '" + filename + "'");
+            return;
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        // Only keep a few chunks per core in flight so the whole file is never held in memory
+        int maxInFlight = pool.getParallelism() * 2;
+        ArrayDeque<ForkJoinTask<List<Object>>> inFlight = new ArrayDeque<>();
+        long start = Metrics.start();
+        try {
+            long size = channel.size();
+            long position = 0;
+            while (position < size || !inFlight.isEmpty()) {
+                while (position < size && inFlight.size() < maxInFlight) {
+                    MappedByteBuffer chunk = mapChunk(channel, position, size);
+                    inFlight.add(pool.submit(() -> parseChunk(chunk)));
+                    position += chunk.limit();
+                }
+
+                // merge the oldest chunk so records are added in file order
+                for (Object parsed : inFlight.poll().join()) {
+                    Metrics.increment(Metrics.Counter.LINES_READ);
+                    if (parsed instanceof Record) {
+                        try {
+                            importRecord((Record) parsed);
+                        }
+                        catch (Exception e) {
+                            System.out.println("Error: Record could not be exported");
+                        }
+                    }
+                    else {
+                        Metrics.increment(Metrics.Counter.PARSE_FAILURES);
+                        System.out.println("Error: Record could not be parsed '" + parsed + "'");
+                    }
+                }
+            }
+            Metrics.add(Metrics.Counter.BYTES_READ, size);
+            Metrics.stop(Metrics.Timer.IMPORT, start);
+        }
+        catch (IOException e) {
+            System.out.println("Error: could not read file '" + filename + "'");
+        }
+        finally {
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                System.out.println("Error: could not close file '" + filename + "'");
+            }
+        }
+
+    }
+
+    /**
+     * Maps the next chunk of the file. The chunk is cut after the last line break, or grown until it has one. A line
+     * longer than the largest chunk that can be mapped is returned as it is and fails to parse.
+     * @return the mapped chunk with its limit set to the end of the last full line
+     */
+    private MappedByteBuffer mapChunk(FileChannel channel, long position, long size) throws IOException {
+        long length = Math.min(chunkSize, size - position);
+        while (true) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position + length == size) {
+                return chunk;
+            }
+            for (int i = (int) length - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    chunk.limit(i + 1);
+                    return chunk;
+                }
+            }
+            long grown = Math.min(length * 2, Math.min(size - position, Integer.MAX_VALUE));
+            if (grown == length) {
+                return chunk;
+            }
+            length = grown;
+        }
+    }
+
+    /**
+     * Parses every line in the chunk
+     * @return a <code>Record</code> for each valid line and the text of each invalid line, in file order
+     */
+    private static List<Object> parseChunk(MappedByteBuffer chunk) {
+        RecordParser parser = RecordParser.get();
+        List<Object> parsed = new ArrayList<>();
+        int start = 0;
+        int limit = chunk.limit();
+        while (start < limit) {
+            int end = start;
+            while (end < limit && chunk.get(end) != '\n') {
+                end++;
+            }
+            int next = end + 1;
+            if (end > start && chunk.get(end - 1) == '\r') {
+                end--;
+            }
+            try {
+                parsed.add(parser.parse(chunk, start, end));
+            }
+            catch (Exception e) {
+                parsed.add(RecordParser.decode(chunk, start, end));
+            }
+            start = next;
+        }
+        return parsed;
+    }
+
+    /**
+     * Adds a record read during an import. If the current record count is the max the records are exported to a
+     * file first.
+     * @param record the data to add
+     * @throws Exception if the export fails
+     */
+    protected void importRecord(Record record) throws Exception {
+        if (this.recordCount % maxRecords == maxRecords -1 ) {
+            export(nextExportName());
+        }
+        addRecord(record);
+    }
+
+    /**
+     * Picks the file the next full batch of an import is exported to, the json name followed by a number counting
+     * up from 0. Numbers whose file the index still has records in are skipped, so an import restarted with a
+     * persistent index never exports over a file from an earlier run.
+     * @return the name of the file to export to
+     */
+    protected String nextExportName() {
+        String name = this.jsonName + exportNumber++;
+        while (index != null && index.references(name)) {
+            name = this.jsonName + exportNumber++;
+        }
+        return name;
+    }
+
+    /**
+     * Exports the records using the format set by <code>setExportFormat</code>
+     * @param filename the name of the file to export to
+     * @throws Exception if there is a problem with the file
+     */
+    public void export(String filename) throws Exception {
+        Map<RecordKey, Record> batch = records;
+        if (flusher != null) {
+            // hand the full batch to the flusher and keep going with an empty one
+            records = new HashMap<>();
+        }
+        exportLater(batch, filename);
+    }
+
+    /**
+     * Hands a batch to the flusher when exports are asynchronous, otherwise exports it right away
+     * @param batch the records to export, the flusher clears them once they are exported
+     * @param filename the name of the file to export to
+     * @throws Exception if there is a problem with the file or the wait for the flusher is interrupted
+     */
+    protected void exportLater(Map<RecordKey, Record> batch, String filename) throws Exception {
+        if (flusher != null) {
+            flushQueue.put(new Batch(batch, filename));
+        }
+        else {
+            exportBatch(batch, filename);
+        }
+    }
+
+    /**
+     * @return true if batches are exported on the flusher thread
+     */
+    protected boolean isAsyncExport() {
+        return flusher != null;
+    }
+
+    /**
+     * @return true if added records are written to a write ahead log, exported files are then synced before the log
+     * drops their records
+     */
+    protected boolean isLogged() {
+        return log != null;
+    }
+
+    /**
+     * Exports a batch of records using the format set by <code>setExportFormat</code>
+     */
+    protected void exportBatch(Map<RecordKey, Record> batch, String filename) throws Exception {
+        if (exportFormat == ExportFormat.SEGMENT) {
+            exportToSegment(filename, batch);
+        }
+        else if (exportFormat == ExportFormat.COMPRESSED_SEGMENT) {
+            exportToCompressedSegment(filename, batch);
+        }
+        else {
+            exportToJson(filename, batch);
+        }
+    }
+
+    /**
+     * Exports the data into a json file. Also adds a new pair with a key and value so that objects can be found
+     * to be updated. The key is a combination of the STB+TITLE+DATE which identifies unique records.
+     * @throws IOException if there is a problem with the file
+     */
+    public void exportToJson(String filename) throws Exception {
+        exportToJson(filename, records);
+    }
+
+    /**
+     * Exports a batch of records into a json file and clears the batch
+     * @param filename the name of the json file
+     * @param batch the records to export
+     * @throws Exception if there is a problem with the file
+     */
+    protected void exportToJson(String filename, Map<RecordKey, Record> batch) throws Exception {
+        long start = Metrics.start();
+        ConcurrentSkipListMap<Location, RecordUpdate> toUpdate = new ConcurrentSkipListMap<>();
+        JSONArray list = new JSONArray();
+        SegmentStats stats = new SegmentStats(batch.size());
+        SecondaryIndex secondary = secondaryIndexes ? new SecondaryIndex() : null;
+
+        for (Record record: batch.values()) {
+            // if the record already exists in a file it is updated there, otherwise we add it to our output
+            if (!addUpdate(record, toUpdate)) {
+                // Add the location to the record mapping
+                putLocation(record.getRecordKey(), new Location(filename, list.size()));
+                if (secondary != null) {
+                    secondary.add(record, list.size());
+                }
+                // Add the record to our json blob
+                list.add(recordToJson(record));
+                stats.add(record);
+            }
+        }
+
+        // update other files if needed
+        updateFiles(toUpdate);
+
+        removeSidecars(filename);
+        writeJsonArrayToFile(filename, list);
+        stats.write(filename);
+        if (manifest) {
+            SegmentManifest.append(filename);
+        }
+        if (secondary != null) {
+            secondary.write(filename);
+        }
+        // when we are done exporting we clear the records
+        clearExported(batch, filename, toUpdate);
+        exported(filename, list.size(), start);
+
+    }
+
+    /**
+     * Exports the data into a binary segment file, see <code>SegmentWriter</code> for the layout. Records that
+     * already exist in a file are updated the same as <code>exportToJson</code>.
+     * @param filename the name of the segment file
+     * @throws Exception if there is a problem with the file
+     */
+    public void exportToSegment(String filename) throws Exception {
+        exportToSegment(filename, records);
+    }
+
+    /**
+     * Exports a batch of records into a segment file and clears the batch
+     * @param filename the name of the segment file
+     * @param batch the records to export
+     * @throws Exception if there is a problem with the file
+     */
+    protected void exportToSegment(String filename, Map<RecordKey, Record> batch) throws Exception {
+        removeSidecars(filename);
+        exportToSlots(filename, batch, new SegmentWriter(filename));
+    }
+
+    /**
+     * Exports the data into a compressed segment file, see <code>CompressedSegmentWriter</code> for the layout.
+     * Records that already exist in a file are updated the same as <code>exportToJson</code>.
+     * @param filename the name of the compressed segment file
+     * @throws Exception if there is a problem with the file
+     */
+    public void exportToCompressedSegment(String filename) throws Exception {
+        exportToCompressedSegment(filename, records);
+    }
+
+    /**
+     * Exports a batch of records into a compressed segment file and clears the batch
+     * @param filename the name of the compressed segment file
+     * @param batch the records to export
+     * @throws Exception if there is a problem with the file
+     */
+    protected void exportToCompressedSegment(String filename, Map<RecordKey, Record> batch) throws Exception {
+        removeSidecars(filename);
+        exportToSlots(filename, batch, new CompressedSegmentWriter(filename));
+    }
+
+    /**
+     * Removes the statistics and secondary index of a file before it is written again. The new statistics are
+     * always written afterwards, the new index only when secondary indexes are enabled, so neither is left
+     * describing the old contents.
+     */
+    private static void removeSidecars(String filename) {
+        SegmentStats.delete(filename);
+        SecondaryIndex.delete(filename);
+    }
+
+    /**
+     * Exports a batch of records with a segment writer and clears the batch
+     */
+    private void exportToSlots(String filename, Map<RecordKey, Record> batch, SlotWriter writer) throws Exception {
+        long start = Metrics.start();
+        ConcurrentSkipListMap<Location, RecordUpdate> toUpdate = new ConcurrentSkipListMap<>();
+        SegmentStats stats = new SegmentStats(batch.size());
+        SecondaryIndex secondary = secondaryIndexes ? new SecondaryIndex() : null;
+
+        for (Record record: batch.values()) {
+            if (!addUpdate(record, toUpdate)) {
+                int slot = writer.add(record);
+                putLocation(record.getRecordKey(), new Location(filename, slot));
+                stats.add(record);
+                if (secondary != null) {
+                    secondary.add(record, slot);
+                }
+            }
+        }
+        writer.close();
+        stats.write(filename);
+        if (manifest) {
+            SegmentManifest.append(filename);
+        }
+        if (secondary != null) {
+            secondary.write(filename);
+        }
+
+        updateFiles(toUpdate);
+        clearExported(batch, filename, toUpdate);
+        exported(filename, writer.getCount(), start);
+
+    }
+
+    /**
+     * Clears the records once they have been exported, flushes the index and bumps the data version if it is
+     * enabled so cached query results are no longer used. If there is a write ahead log the exported files are synced
+     * and then the log is truncated.
+     * @param batch the records that were exported
+     * @param filename the file the records were exported to
+     * @param toUpdate the records that were updated in other files
+     * @throws IOException if the files cannot be synced
+     */
+    private void clearExported(Map<RecordKey, Record> batch, String filename,
+                               ConcurrentSkipListMap<Location, RecordUpdate> toUpdate) throws IOException {
+        batch.clear();
+        if (index != null) {
+            index.flush();
+        }
+        bumpVersion(Collections.singletonList(filename));
+        if (isLogged()) {
+            WriteAheadLog.sync(filename);
+            String updated = null;
+            for (Location location : toUpdate.keySet()) {
+                if (!location.filename.equals(updated)) {
+                    updated = location.filename;
+                    WriteAheadLog.sync(updated);
+                }
+            }
+            if (log != null) {
+                log.truncate();
+            }
+        }
+    }
+
+    /**
+     * Bumps the data version and the version of the changed files if <code>enableDataVersion</code> is on
+     */
+    private void bumpVersion(Collection<String> filenames) throws IOException {
+        if (versionFile != null) {
+            QueryCache.bumpVersion(versionFile, filenames);
+        }
+    }
+
+    /**
+     * Counts the records and bytes written by an export and records how long it took
+     */
+    private static void exported(String filename, int count, long start) {
+        Metrics.add(Metrics.Counter.RECORDS_EXPORTED, count);
+        if (Metrics.ENABLED) {
+            Metrics.add(Metrics.Counter.BYTES_WRITTEN, new File(filename).length());
+        }
+        Metrics.stop(Metrics.Timer.EXPORT, start);
+    }
+
+    /**
+     * Remembers where a record was exported to
+     */
+    private void putLocation(RecordKey key, Location location) throws IOException {
+        if (index != null) {
+            index.put(key, location);
+        }
+        else {
+            recordMappings.put(key, location);
+        }
+    }
+
+    /**
+     * Checks if the record was already exported and if so adds it to the records needing to be updated
+     * @param record the record being exported
+     * @param toUpdate the records needing to be updated
+     * @return true if the record was added to the updates
+     */
+    private boolean addUpdate(Record record, ConcurrentSkipListMap<Location, RecordUpdate> toUpdate)
+            throws IOException {
+        RecordKey key = record.getRecordKey();
+        Location found = index != null ? index.get(key) : recordMappings.get(key);
+        if (found == null) {
+            return false;
+        }
+        // Locations sort by filename first so that the files will be grouped
+        toUpdate.put(found, new RecordUpdate(found, record));
+        return true;
+    }
+
+    protected JSONObject recordToJson(Record record) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("KEY", record.getKey());
+        jsonObject.put("STB", record.getStb());
+        jsonObject.put("TITLE", record.getTitle());
+        jsonObject.put("PROVIDER", record.getProvider());
+        jsonObject.put("DATE", record.getDate());
+        jsonObject.put("REV", record.getRev());
+        jsonObject.put("VIEW_TIME", record.getViewTime());
+        return jsonObject;
+    }
+
+    /**
+     * Updates the records in their corresponding files. Groups all records for a specific file so that it only
+     * needs to be updated ones. Segment files are updated in place, json files are rewritten. The data version, if
+     * it is enabled, is bumped once the files are updated.
+     * @param toUpdate the records needing to be updated
+     * @throws Exception IO or Parse exceptions if there are any issues
+     */
+    protected void updateFiles(ConcurrentSkipListMap<Location, RecordUpdate> toUpdate) throws Exception {
+        long start = Metrics.start();
+        List<RecordUpdate> fileUpdates = new ArrayList<>();
+        List<String> updated = new ArrayList<>();
+
+        for(RecordUpdate uRecord : toUpdate.values()){
+            // Check if the record is in the same file as the previous ones, if not update that file first
+            if (!fileUpdates.isEmpty() && !fileUpdates.get(0).filename.equals(uRecord.filename)) {
+                updateFile(fileUpdates.get(0).filename, fileUpdates);
+                updated.add(fileUpdates.get(0).filename);
+                fileUpdates.clear();
+            }
+            fileUpdates.add(uRecord);
+        }
+
+        // update the last file
+        if (!fileUpdates.isEmpty()) {
+            updateFile(fileUpdates.get(0).filename, fileUpdates);
+            updated.add(fileUpdates.get(0).filename);
+            bumpVersion(updated);
+            Metrics.stop(Metrics.Timer.UPDATE, start);
+        }
+
+    }
+
+    /**
+     * Updates the records in a single file along with its statistics and secondary index
+     * @param filename the file to update
+     * @param updates the records in the file needing to be updated
+     * @throws Exception IO or Parse exceptions if there are any issues
+     */
+    protected void updateFile(String filename, List<RecordUpdate> updates) throws Exception {
+        // widen the statistics and secondary index before the file changes so they always cover what is in it
+        SegmentStats stats = SegmentStats.read(filename);
+        if (stats != null) {
+            for (RecordUpdate uRecord : updates) {
+                stats.add(uRecord.record);
+            }
+            stats.write(filename);
+        }
+        SecondaryIndex secondary = SecondaryIndex.read(filename);
+        if (secondary != null) {
+            for (RecordUpdate uRecord : updates) {
+                secondary.add(uRecord.record, uRecord.index);
+            }
+            secondary.write(filename);
+        }
+
+        if (SegmentReader.isSegment(filename)) {
+            updateSegmentFile(filename, updates);
+            Metrics.add(Metrics.Counter.BYTES_WRITTEN, (long) updates.size() * SegmentWriter.SLOT_SIZE);
+        }
+        else if (CompressedSegmentReader.isCompressedSegment(filename)) {
+            updateCompressedSegmentFile(filename, updates);
+            if (Metrics.ENABLED) {
+                Metrics.add(Metrics.Counter.BYTES_WRITTEN, new File(filename).length());
+            }
+        }
+        else {
+            updateJsonFile(filename, updates);
+            if (Metrics.ENABLED) {
+                Metrics.add(Metrics.Counter.BYTES_WRITTEN, new File(filename).length());
+            }
+        }
+        Metrics.increment(Metrics.Counter.FILES_REWRITTEN);
+
+        // once the file is written the old values can be dropped from the secondary index
+        if (secondary != null) {
+            for (RecordUpdate uRecord : updates) {
+                secondary.removeOthers(uRecord.record, uRecord.index);
+            }
+            secondary.write(filename);
+        }
+    }
+
+    /**
+     * Rewrites a json file with the updated records
+     * @param filename the json file to update
+     * @param updates the records in the file needing to be updated
+     * @throws Exception IO or Parse exceptions if there are any issues
+     */
+    protected void updateJsonFile(String filename, List<RecordUpdate> updates) throws Exception {
+        JSONParser parser = new JSONParser();
+        FileReader reader = new FileReader(filename);
+        JSONArray list = (JSONArray) parser.parse(reader);
+        reader.close();
+        // updates the data in the json array
+        for (RecordUpdate uRecord : updates) {
+            list.set(uRecord.index, recordToJson(uRecord.record));
+        }
+        writeJsonArrayToFile(filename, list);
+    }
+
+    /**
+     * Overwrites the updated records in their slots in a segment file. The updates are sorted by index so the writes
+     * are sequential and nothing else in the file is rewritten.
+     * @param filename the segment to update
+     * @param updates the records in the segment needing to be updated
+     * @throws Exception if there is an IO issue
+     */
+    protected void updateSegmentFile(String filename, List<RecordUpdate> updates) throws Exception {
+        SegmentUpdater updater = new SegmentUpdater(filename);
+        for (RecordUpdate uRecord : updates) {
+            updater.write(uRecord.index, uRecord.record);
+        }
+        updater.close();
+    }
+
+    /**
+     * Rewrites a compressed segment with the updated records. Blocks can't be changed in place, so every record is
+     * read and written to a new file that then replaces the old one, keeping every record in its slot.
+     * @param filename the compressed segment to update
+     * @param updates the records in the segment needing to be updated
+     * @throws Exception if there is an IO issue
+     */
+    protected void updateCompressedSegmentFile(String filename, List<RecordUpdate> updates) throws Exception {
+        String temp = filename + ".tmp";
+        try (CompressedSegmentReader reader = new CompressedSegmentReader(filename);
+             CompressedSegmentWriter writer = new CompressedSegmentWriter(temp)) {
+            int next = 0;
+            for (int slot = 0; slot < reader.getCount(); slot++) {
+                if (next < updates.size() && updates.get(next).index == slot) {
+                    writer.add(updates.get(next++).record);
+                }
+                else {
+                    writer.add(reader.getRecord(slot));
+                }
+            }
+        }
+        Files.move(Paths.get(temp), Paths.get(filename), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the contents of the array to the file
+     * @param filename the name of the file to be written
+     * @param array the data to be written in the file
+     * @throws Exception when there is an IO issue
+     */
+    protected void writeJsonArrayToFile(String filename, JSONArray array) throws Exception {
+        FileWriter file = new FileWriter(filename);
+        file.write(array.toJSONString());
+        file.close();
+
+    }
+
+    public void importFromJson() throws Exception {
+        File file = new File(JSONFILE);
+
+        if (!file.exists()) {
+            System.out.println("Info: No data to load from Json");
+            return;
+        }
+        JSONParser parser = new JSONParser();
+        FileReader reader = new FileReader(file);
+        JSONArray list = (JSONArray) parser.parse(reader);
+        for(int i = 0; i < list.size(); i++) {
+            JSONObject obj = (JSONObject) list.get(i);
+
+            // get the info for the json object
+            String stb = (String) obj.get("STB");
+            String title = (String) obj.get("TITLE");
+            String provider = (String) obj.get("PROVIDER");
+            String date = (String) obj.get("DATE");
+            Double rev = (Double) obj.get("REV");
+            String view_time = (String) obj.get("VIEW_TIME");
+            Record record = new Record(stb, title, provider, date, rev, view_time);
+
+            // add the record to records
+            addRecord(record);
+        }
+
+    }
+
+    /**
+     * Imports all records from a segment file written by <code>exportToSegment</code> or
+     * <code>exportToCompressedSegment</code>
+     * @param filename the segment to import
+     * @throws Exception if the file cannot be read
+     */
+    public void importFromSegment(String filename) throws Exception {
+        SlotReader reader = SlotReader.open(filename);
+        for (int i = 0; i < reader.getCount(); i++) {
+            addRecord(reader.getRecord(i));
+        }
+        reader.close();
+    }
+
+}
@@ -0,0 +1,228 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.io.IOException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+/**
+ * Created by DJ Sabo on 5/6/17.
+ */
+public class RecordsTest extends TestCase {
+    private String createFile(String filename) {
+        File file = new File(filename);
+        try {
+            if(file.exists()){
+                deleteFile(filename);
+            }
+
+            file.createNewFile();
+            FileWriter writer = new FileWriter(file);
+            StringBuilder sb = new StringBuilder();
+            writer.write("stb1|the matrix|warner bros|2014-04-01|4.00|1:30\n");
+            writer.write("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45\n");
+            writer.write("stb1|unbreakable|buena vista|2014-04-03|6.00|2:05\n");
+            writer.write("stb3|the matrix|warner bros|2014-04-02|4.00|1:05\n");
+            writer.close();
+        }
+
+        catch (Exception e) {
+            System.out.println("Error creating file");
+        }
+        return filename;
+    }
+
+    private void deleteFile(String filename){
+        File file = new File(filename);
+        if(file.exists()){
+            file.delete();
+        }
+        new File(filename + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testImportFromFile() throws Exception {
+        // Setup
+        String filename = "TempFile";
+        createFile(filename);
+        // Call
+        Records records = new Records();
+        records.importFromFile(filename);
+        // Test
+        assertEquals(4, records.getCount());
+        // Cleanup
+        deleteFile(filename);
+    }
+
+    public void testImportFromFileNoDuplicates() throws Exception {
+        // Setup
+        String filename = "TempFile";
+        createFile(filename);
+        // Call
+        Records records = new Records();
+        records.importFromFile(filename);
+        records.importFromFile(filename);
+        // Test
+        assertEquals(4, records.getCount());
+        // Cleanup
+        deleteFile(filename);
+    }
+
+    public void testImportFromFileParallel() throws Exception {
+        // Setup
+        String filename = "TempFile";
+        createFile(filename);
+        FileWriter writer = new FileWriter(filename, true);
+        writer.write("bad line\n");
+        writer.write("stb1|the matrix|warner bros|2014-04-01|5.00|1:45");
+        writer.close();
+        // Call
+        Records records = new Records();
+        records.setChunkSize(16);
+        records.importFromFileParallel(filename);
+        int count = records.getCount();
+        records.exportToSegment("TempParallel");
+        Record matrix = null;
+        try (SegmentReader reader = new SegmentReader("TempParallel")) {
+            for (int i = 0; i < reader.getCount(); i++) {
+                Record record = reader.getRecord(i);
+                if (record.getStb().equals("stb1") && record.getTitle().equals("the matrix")) {
+                    matrix = record;
+                }
+            }
+        }
+        // Test
+        assertEquals(4, count);
+        // the later duplicate line overwrote the first one
+        assertEquals(5.0, matrix.getRev());
+        assertEquals("1:45", matrix.getViewTime());
+        // Cleanup
+        deleteFile(filename);
+        deleteFile("TempParallel");
+    }
+
+    public void testJSONExportImport() throws Exception {
+        // Setup
+        String filename = "TempFile";
+        createFile(filename);
+        Records records2 = new Records();
+        // Call
+        Records records = new Records();
+        records.importFromFile(filename);
+        records.exportToJson("jsont1");
+        records2.importFromJson();
+        // Test
+        assertEquals(4, records.getCount());
+        assertEquals(4, records2.getCount());
+        // Cleanup
+        deleteFile(filename);
+
+    }
+
+    public void testJSONExportImport2() throws Exception {
+        // Setup
+        String filename = "TempFile";
+        createFile(filename);
+        // Call
+        Records records = new Records();
+        records.importFromFile(filename);
+        records.exportToJson("jsonfile.json");
+        records.importFromFile("file1");
+        records.exportToJson("jsonfile2.json");
+        // Test
+        assertEquals(0, records.getCount());
+        // Cleanup
+        deleteFile(filename);
+
+    }
+
+    public void testSegmentExportUpdate() throws Exception {
+        // Setup
+        String filename = "TempFile";
+        createFile(filename);
+        Records records = new Records();
+        records.importFromFile(filename);
+        records.exportToSegment("segment1");
+        FileWriter writer = new FileWriter(filename);
+        writer.write("stb2|the hobbit|hbo|2014-04-02|9.50|2:50\n");
+        writer.write("stb4|the hobbit|warner bros|2014-04-02|8.00|2:45\n");
+        writer.close();
+        // Call
+        records.importFromFile(filename);
+        records.exportToSegment("segment2");
+        // Test
+        SegmentReader segment1 = new SegmentReader("segment1");
+        SegmentReader segment2 = new SegmentReader("segment2");
+        assertEquals(4, segment1.getCount());
+        assertEquals(1, segment2.getCount());
+        boolean updated = false;
+        for (int i = 0; i < segment1.getCount(); i++) {
+            Record record = segment1.getRecord(i);
+            if (record.getStb().equals("stb2")) {
+                updated = record.getProvider().equals("hbo") && record.getRev() == 9.5;
+            }
+        }
+        assertTrue(updated);
+        segment1.close();
+        segment2.close();
+        // Cleanup
+        deleteFile(filename);
+        deleteFile("segment1");
+        deleteFile("segment2");
+    }
+
+    public void testAsyncExport() throws Exception {
+        // Setup
+        String filename = "TempFile";
+        FileWriter writer = new FileWriter(filename);
+        writer.write("stb1|the matrix|warner bros|2014-04-01|4.00|1:30\n");
+        writer.write("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45\n");
+        writer.write("stb1|unbreakable|buena vista|2014-04-03|6.00|2:05\n");
+        writer.write("stb3|the matrix|warner bros|2014-04-02|4.00|1:05\n");
+        writer.write("stb1|the matrix|warner bros|2014-04-01|7.00|1:30\n");
+        writer.write("stb4|the matrix|warner bros|2014-04-02|4.00|1:05\n");
+        writer.close();
+        Records records = new Records();
+        records.setMaxRecords(2);
+        records.setJsonName("TempAsync");
+        records.enableAsyncExport(1);
+        // Call
+        records.importFromFile(filename);
+        records.awaitExports();
+        records.close();
+        // Test
+        JSONParser parser = new JSONParser();
+        JSONArray first = (JSONArray) parser.parse(new FileReader("TempAsync0"));
+        JSONArray last = (JSONArray) parser.parse(new FileReader("TempAsync2"));
+        assertEquals(1, first.size());
+        assertEquals(7.0, ((JSONObject) first.get(0)).get("REV"));
+        assertEquals(1, last.size());
+        assertEquals("stb3", ((JSONObject) last.get(0)).get("STB"));
+        // Cleanup
+        deleteFile(filename);
+        deleteFile("TempAsync0");
+        deleteFile("TempAsync1");
+        deleteFile("TempAsync2");
+    }
+
+    public void testAsyncExportFailureIsReported() throws Exception {
+        // Setup
+        Records records = new Records();
+        records.enableAsyncExport(1);
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        // Call
+        records.export("NoSuchDirectory" + File.separator + "TempAsync");
+        try {
+            records.awaitExports();
+            fail("the export to a missing directory should be reported");
+        }
+        catch (IOException e) {
+            // Test
+            assertTrue(e.getMessage().contains("TempAsync"));
+        }
+        records.close();
+    }
+}
@@ -0,0 +1,177 @@
+package cscore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inverted indexes on STB, TITLE and PROVIDER for one export file, kept in a <code>&lt;file&gt;.idx</code> sidecar.
+ * Each value maps to the sorted slots of the records that have it, the slot being the record's index in a json
+ * export or its slot in a segment. A point lookup can then read just the matching records instead of the whole file.
+ */
+public class SecondaryIndex {
+    public static final String SUFFIX = ".idx";
+    public static final String[] FIELDS = {"STB", "TITLE", "PROVIDER"};
+    private static final int VERSION = 1;
+
+    private final HashMap<String, HashMap<String, Postings>> fields = new HashMap<>();
+
+    /**
+     * Creates an empty index
+     */
+    public SecondaryIndex() {
+        for (String field : FIELDS) {
+            fields.put(field, new HashMap<>());
+        }
+    }
+
+    /**
+     * The sorted slots holding a value
+     */
+    private static class Postings {
+        int[] slots = new int[4];
+        int size = 0;
+
+        void add(int slot) {
+            int index = size == 0 || slots[size - 1] < slot ? -size - 1 : Arrays.binarySearch(slots, 0, size, slot);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            System.arraycopy(slots, index, slots, index + 1, size - index);
+            slots[index] = slot;
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+
+    /**
+     * Adds the record's values to the index
+     * @param record the record in the file
+     * @param slot where the record is in the file
+     */
+    public void add(Record record, int slot) {
+        for (String field : FIELDS) {
+            fields.get(field).computeIfAbsent(value(record, field), value -> new Postings()).add(slot);
+        }
+    }
+
+    /**
+     * Removes the slot from every provider the record doesn't have, used once an update has been written. STB and
+     * TITLE are part of the record key so an update never changes them.
+     * @param record the record now in the slot
+     * @param slot where the record is in the file
+     */
+    public void removeOthers(Record record, int slot) {
+        String provider = record.getProvider();
+        fields.get("PROVIDER").entrySet().removeIf(entry ->
+                !entry.getKey().equals(provider) && entry.getValue().remove(slot) && entry.getValue().size == 0);
+    }
+
+    private static String value(Record record, String field) {
+        switch (field) {
+            case "STB": return record.getStb();
+            case "TITLE": return record.getTitle();
+            default: return record.getProvider();
+        }
+    }
+
+    /**
+     * @param field one of STB, TITLE or PROVIDER
+     * @param value the value to look up
+     * @return the sorted slots of the records with the value, empty if there are none
+     */
+    public int[] lookup(String field, String value) {
+        Postings postings = fields.get(field).get(value);
+        return postings == null ? new int[0] : Arrays.copyOf(postings.slots, postings.size);
+    }
+
+    /**
+     * Writes the index to the sidecar of the file
+     * @param filename the name of the export file the index describes
+     * @throws IOException if the sidecar cannot be written
+     */
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(filename + SUFFIX)))) {
+            out.writeInt(VERSION);
+            for (String field : FIELDS) {
+                HashMap<String, Postings> values = fields.get(field);
+                out.writeInt(values.size());
+                for (Map.Entry<String, Postings> entry : values.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    Postings postings = entry.getValue();
+                    out.writeInt(postings.size);
+                    for (int i = 0; i < postings.size; i++) {
+                        out.writeInt(postings.slots[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the sidecar of a file so it can't describe data the file no longer holds
+     * @param filename the name of the export file
+     */
+    public static void delete(String filename) {
+        new File(filename + SUFFIX).delete();
+    }
+
+    /**
+     * Reads the sidecar of a file
+     * @param filename the name of the export file
+     * @return the index or null if the file has no readable index
+     */
+    public static SecondaryIndex read(String filename) {
+        File file = new File(filename + SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            SecondaryIndex index = new SecondaryIndex();
+            for (String field : FIELDS) {
+                HashMap<String, Postings> values = index.fields.get(field);
+                int valueCount = in.readInt();
+                for (int i = 0; i < valueCount; i++) {
+                    String value = in.readUTF();
+                    Postings postings = new Postings();
+                    postings.size = in.readInt();
+                    postings.slots = new int[Math.max(4, postings.size)];
+                    for (int j = 0; j < postings.size; j++) {
+                        postings.slots[j] = in.readInt();
+                    }
+                    values.put(value, postings);
+                }
+            }
+            return index;
+        }
+        catch (IOException e) {
+            // without the index the file is scanned instead
+            return null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Tests for <code>SecondaryIndex</code>
+ */
+public class SecondaryIndexTest extends TestCase {
+    private static final String FILENAME = "TempSecondary";
+
+    private void deleteExport(String filename) {
+        new File(filename).delete();
+        new File(filename + SegmentStats.SUFFIX).delete();
+        new File(filename + SecondaryIndex.SUFFIX).delete();
+    }
+
+    public void testLookup() throws Exception {
+        // Setup
+        SecondaryIndex index = new SecondaryIndex();
+        // Call
+        index.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"), 0);
+        index.add(new Record("stb2|the matrix|warner bros|2014-04-01|4.00|1:30"), 1);
+        index.add(new Record("stb1|the hobbit|hbo|2014-04-02|8.00|2:45"), 2);
+        // Test
+        assertTrue(Arrays.equals(new int[]{0, 2}, index.lookup("STB", "stb1")));
+        assertTrue(Arrays.equals(new int[]{0, 1}, index.lookup("TITLE", "the matrix")));
+        assertTrue(Arrays.equals(new int[]{2}, index.lookup("PROVIDER", "hbo")));
+        assertEquals(0, index.lookup("STB", "stb9").length);
+    }
+
+    public void testReadWrite() throws Exception {
+        // Setup
+        SecondaryIndex index = new SecondaryIndex();
+        index.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"), 0);
+        index.add(new Record("stb2|the hobbit|hbo|2014-04-02|8.00|2:45"), 1);
+        // Call
+        index.write(FILENAME);
+        SecondaryIndex read = SecondaryIndex.read(FILENAME);
+        // Test
+        assertTrue(Arrays.equals(new int[]{1}, read.lookup("STB", "stb2")));
+        assertTrue(Arrays.equals(new int[]{0}, read.lookup("PROVIDER", "warner bros")));
+        assertNull(SecondaryIndex.read("missingSecondary"));
+        // Cleanup
+        deleteExport(FILENAME);
+    }
+
+    public void testFilterLookup() throws Exception {
+        // Setup
+        SecondaryIndex index = new SecondaryIndex();
+        index.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"), 0);
+        index.add(new Record("stb2|the matrix|hbo|2014-04-01|4.00|1:30"), 1);
+        index.add(new Record("stb3|the hobbit|hbo|2014-04-02|8.00|2:45"), 2);
+        // Test
+        assertTrue(Arrays.equals(new int[]{1},
+                RecordFilter.compile("TITLE=the matrix AND PROVIDER=hbo").lookup(index)));
+        assertTrue(Arrays.equals(new int[]{0, 2},
+                RecordFilter.compile("STB=stb3 OR PROVIDER=warner bros").lookup(index)));
+        assertTrue(Arrays.equals(new int[]{1, 2},
+                RecordFilter.compile("STB IN (stb2,stb3) AND REV>5").lookup(index)));
+        assertNull(RecordFilter.compile("STB=stb1 OR REV>5").lookup(index));
+        assertNull(RecordFilter.compile("STB!=stb1").lookup(index));
+    }
+
+    public void testExportAndUpdate() throws Exception {
+        // Setup
+        Records records = new Records();
+        records.enableSecondaryIndexes();
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.addRecord(new Record("stb2|the hobbit|hbo|2014-04-02|8.00|2:45"));
+        records.exportToSegment(FILENAME);
+        // Call
+        records.addRecord(new Record("stb1|the matrix|hbo|2014-04-01|5.00|1:30"));
+        records.exportToSegment(FILENAME + "2");
+        SecondaryIndex index = SecondaryIndex.read(FILENAME);
+        SegmentReader reader = new SegmentReader(FILENAME);
+        // Test
+        assertEquals(0, index.lookup("PROVIDER", "warner bros").length);
+        assertEquals(2, index.lookup("PROVIDER", "hbo").length);
+        int slot = index.lookup("STB", "stb1")[0];
+        assertEquals("hbo", reader.getRecord(slot).getProvider());
+        // Cleanup
+        reader.close();
+        deleteExport(FILENAME);
+        deleteExport(FILENAME + "2");
+    }
+
+    public void testReexportWithoutIndexRemovesSidecar() throws Exception {
+        // Setup
+        Records indexed = new Records();
+        indexed.enableSecondaryIndexes();
+        indexed.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        indexed.exportToJson(FILENAME);
+        // Call
+        Records plain = new Records();
+        plain.addRecord(new Record("stb2|the hobbit|hbo|2014-04-02|8.00|2:45"));
+        plain.addRecord(new Record("stb1|unbreakable|hbo|2014-04-03|6.00|2:05"));
+        plain.exportToJson(FILENAME);
+        // Test
+        assertNull(SecondaryIndex.read(FILENAME));
+        assertFalse(new File(FILENAME + SecondaryIndex.SUFFIX).exists());
+        // Cleanup
+        deleteExport(FILENAME);
+    }
+}
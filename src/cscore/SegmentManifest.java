@@ -0,0 +1,53 @@
+package cscore;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * The list of export files that make up the data, one filename per line in the order they were first exported.
+ * When it is enabled <code>Records</code> appends each new export file so a <code>Query</code> can find every segment
+ * without being told their names.
+ */
+public class SegmentManifest {
+    public static final String FILE = "data.manifest";
+
+    /**
+     * Adds a file to the manifest
+     * @param filename the name of the export file
+     * @throws IOException if the manifest cannot be written
+     */
+    public static synchronized void append(String filename) throws IOException {
+        try (FileWriter writer = new FileWriter(FILE, true)) {
+            writer.write(filename + "\n");
+        }
+    }
+
+    /**
+     * @return the export files in the manifest that still exist, each once in the order they were first exported
+     */
+    public static List<String> read() {
+        List<String> files = new ArrayList<>();
+        if (!new File(FILE).exists()) {
+            return files;
+        }
+        try {
+            // a file that is exported again under the same name keeps its first place
+            for (String filename : new LinkedHashSet<>(Files.readAllLines(Paths.get(FILE), StandardCharsets.UTF_8))) {
+                if (!filename.isEmpty() && new File(filename).exists()) {
+                    files.add(filename);
+                }
+            }
+        }
+        catch (IOException e) {
+            System.out.println("Error: could not read the manifest '" + FILE + "'");
+        }
+        return files;
+    }
+}
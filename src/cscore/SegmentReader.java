@@ -0,0 +1,88 @@
+package cscore;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a binary segment written by <code>SegmentWriter</code>. The file is memory mapped and records are decoded
+ * from their slots as they are requested, nothing but the dictionary is loaded up front.
+ */
+public class SegmentReader implements SlotReader {
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final int count;
+    private final String[] dictionary;
+
+    /**
+     * Opens a segment for reading
+     * @param filename the name of the segment file
+     * @throws IOException if the file cannot be read or is not a segment
+     */
+    public SegmentReader(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (data.limit() < SegmentWriter.HEADER_SIZE || data.getInt(0) != SegmentWriter.MAGIC) {
+            channel.close();
+            throw new IOException(filename + " is not a segment file");
+        }
+        count = data.getInt(SegmentWriter.ROW_COUNT_OFFSET);
+        dictionary = new String[data.getInt(SegmentWriter.DICTIONARY_COUNT_OFFSET)];
+        int position = (int) data.getLong(SegmentWriter.DICTIONARY_OFFSET_OFFSET);
+        for (int id = 0; id < dictionary.length; id++) {
+            int length = data.getInt(position);
+            dictionary[id] = RecordParser.decode(data, position + 4, position + 4 + length);
+            position += 4 + length;
+        }
+    }
+
+    /**
+     * @param filename the name of the file to check
+     * @return true if the file starts with the segment magic number
+     */
+    public static boolean isSegment(String filename) {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r")) {
+            return file.length() >= SegmentWriter.HEADER_SIZE && file.readInt() == SegmentWriter.MAGIC;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of records in the segment
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Decodes the record in a slot
+     * @param slot the slot from 0 to <code>getCount() - 1</code>
+     * @return a new record with the slot's values
+     */
+    @Override
+    public Record getRecord(int slot) {
+        return readSlot(data, SegmentWriter.HEADER_SIZE + slot * SegmentWriter.SLOT_SIZE, dictionary);
+    }
+
+    static Record readSlot(ByteBuffer data, int offset, String[] dictionary) {
+        String stb = dictionary[data.getInt(offset)];
+        String title = dictionary[data.getInt(offset + 4)];
+        String provider = dictionary[data.getInt(offset + 8)];
+        int epochDay = data.getInt(offset + 12);
+        int minutes = data.getShort(offset + 16);
+        double rev = data.getDouble(offset + 18);
+        return Record.fromFields(stb, title, provider, epochDay, minutes, rev);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
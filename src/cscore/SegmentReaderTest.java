@@ -0,0 +1,48 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+
+/**
+ * Tests for <code>SegmentWriter</code> and <code>SegmentReader</code>
+ */
+public class SegmentReaderTest extends TestCase {
+
+    public void testWriteRead() throws Exception {
+        // Setup
+        String filename = "TempSegment";
+        SegmentWriter writer = new SegmentWriter(filename);
+        // Call
+        writer.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        writer.add(new Record("stb2|the matrix|warner bros|2014-04-02|0.99|0:05"));
+        writer.add(new Record("stb3|am\u00e9lie|studiocanal|2014-04-03|3.50|2:02"));
+        writer.close();
+        SegmentReader reader = new SegmentReader(filename);
+        // Test
+        assertTrue(SegmentReader.isSegment(filename));
+        assertEquals(3, reader.getCount());
+        Record record = reader.getRecord(1);
+        assertEquals("stb2", record.getStb());
+        assertEquals("the matrix", record.getTitle());
+        assertEquals("warner bros", record.getProvider());
+        assertEquals("2014-04-02", record.getDate());
+        assertEquals(0.99, record.getRev());
+        assertEquals(5, record.getViewMinutes());
+        assertEquals("am\u00e9lie", reader.getRecord(2).getTitle());
+        reader.close();
+        // Cleanup
+        new File(filename).delete();
+    }
+
+    public void testNotSegment() throws Exception {
+        // Setup
+        String filename = "TempSegment";
+        java.io.FileWriter writer = new java.io.FileWriter(filename);
+        writer.write("[{\"STB\":\"stb1\"}, {\"STB\":\"stb2\"}]");
+        writer.close();
+        // Test
+        assertFalse(SegmentReader.isSegment(filename));
+        // Cleanup
+        new File(filename).delete();
+    }
+}
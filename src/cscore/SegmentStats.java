@@ -0,0 +1,197 @@
+package cscore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Statistics about the records in one export file, kept in a <code>&lt;file&gt;.stats</code> sidecar. Holds the
+ * minimum and maximum DATE and REV, every PROVIDER and a bloom filter on STB so a query can tell that a file has no
+ * matching records without opening it. Updates only ever widen the statistics, so they may cover values that have
+ * since been overwritten but never miss a value that is in the file.
+ */
+public class SegmentStats {
+    public static final String SUFFIX = ".stats";
+    private static final int VERSION = 1;
+    private static final int BITS_PER_RECORD = 10;
+    private static final int HASHES = 7;
+
+    private int count = 0;
+    private int minEpochDay = Integer.MAX_VALUE;
+    private int maxEpochDay = Integer.MIN_VALUE;
+    private double minRev = Double.POSITIVE_INFINITY;
+    private double maxRev = Double.NEGATIVE_INFINITY;
+    private final TreeSet<String> providers = new TreeSet<>();
+    private final long[] stbBloom;
+
+    /**
+     * @param expectedRecords the number of records the file is expected to hold, used to size the bloom filter
+     */
+    public SegmentStats(int expectedRecords) {
+        this(new long[Math.max(1, (expectedRecords * BITS_PER_RECORD + 63) / 64)]);
+    }
+
+    private SegmentStats(long[] stbBloom) {
+        this.stbBloom = stbBloom;
+    }
+
+    /**
+     * Widens the statistics to cover the record
+     * @param record the record in the file
+     */
+    public void add(Record record) {
+        count++;
+        int day = record.getEpochDay();
+        minEpochDay = Math.min(minEpochDay, day);
+        maxEpochDay = Math.max(maxEpochDay, day);
+        minRev = Math.min(minRev, record.getRev());
+        maxRev = Math.max(maxRev, record.getRev());
+        providers.add(record.getProvider());
+
+        int hash = record.getStb().hashCode();
+        int step = mix(hash);
+        long bits = (long) stbBloom.length * 64;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) Math.floorMod(hash + (long) i * step, bits);
+            stbBloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return the number of records added, including the ones that updated an earlier record
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getMinEpochDay() {
+        return minEpochDay;
+    }
+
+    public int getMaxEpochDay() {
+        return maxEpochDay;
+    }
+
+    public double getMinRev() {
+        return minRev;
+    }
+
+    public double getMaxRev() {
+        return maxRev;
+    }
+
+    public Set<String> getProviders() {
+        return providers;
+    }
+
+    /**
+     * @param stb the set top box to check
+     * @return false if no record in the file has the stb, true if one might
+     */
+    public boolean mightContainStb(String stb) {
+        int hash = stb.hashCode();
+        int step = mix(hash);
+        long bits = (long) stbBloom.length * 64;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) Math.floorMod(hash + (long) i * step, bits);
+            if ((stbBloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Spreads the string hash into a second odd hash for double hashing
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash | 1;
+    }
+
+    /**
+     * Writes the statistics to the sidecar of the file
+     * @param filename the name of the export file the statistics describe
+     * @throws IOException if the sidecar cannot be written
+     */
+    public void write(String filename) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(filename + SUFFIX)))) {
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(minEpochDay);
+            out.writeInt(maxEpochDay);
+            out.writeDouble(minRev);
+            out.writeDouble(maxRev);
+            out.writeInt(providers.size());
+            for (String provider : providers) {
+                out.writeUTF(provider);
+            }
+            out.writeInt(stbBloom.length);
+            for (long word : stbBloom) {
+                out.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Removes the sidecar of a file so it can't describe data the file no longer holds
+     * @param filename the name of the export file
+     */
+    public static void delete(String filename) {
+        new File(filename + SUFFIX).delete();
+    }
+
+    /**
+     * Reads the sidecar of a file
+     * @param filename the name of the export file
+     * @return the statistics or null if the file has no readable sidecar
+     */
+    public static SegmentStats read(String filename) {
+        File file = new File(filename + SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            int count = in.readInt();
+            int minEpochDay = in.readInt();
+            int maxEpochDay = in.readInt();
+            double minRev = in.readDouble();
+            double maxRev = in.readDouble();
+            TreeSet<String> providers = new TreeSet<>();
+            int providerCount = in.readInt();
+            for (int i = 0; i < providerCount; i++) {
+                providers.add(in.readUTF());
+            }
+            long[] stbBloom = new long[in.readInt()];
+            for (int i = 0; i < stbBloom.length; i++) {
+                stbBloom[i] = in.readLong();
+            }
+
+            SegmentStats stats = new SegmentStats(stbBloom);
+            stats.count = count;
+            stats.minEpochDay = minEpochDay;
+            stats.maxEpochDay = maxEpochDay;
+            stats.minRev = minRev;
+            stats.maxRev = maxRev;
+            stats.providers.addAll(providers);
+            return stats;
+        }
+        catch (IOException e) {
+            // a damaged sidecar only means the file can't be skipped
+            return null;
+        }
+    }
+}
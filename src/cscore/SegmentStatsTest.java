@@ -0,0 +1,90 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+
+/**
+ * Tests for <code>SegmentStats</code>
+ */
+public class SegmentStatsTest extends TestCase {
+    private static final String FILENAME = "statsTest";
+
+    public void testReadWrite() throws Exception {
+        // Setup
+        SegmentStats stats = new SegmentStats(2);
+        stats.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        stats.add(new Record("stb2|unbreakable|buena vista|2014-04-03|6.00|2:05"));
+        // Call
+        stats.write(FILENAME);
+        SegmentStats read = SegmentStats.read(FILENAME);
+        // Test
+        assertEquals(2, read.getCount());
+        assertEquals(stats.getMinEpochDay(), read.getMinEpochDay());
+        assertEquals(stats.getMaxEpochDay(), read.getMaxEpochDay());
+        assertEquals(4.0, read.getMinRev());
+        assertEquals(6.0, read.getMaxRev());
+        assertTrue(read.getProviders().contains("buena vista"));
+        assertTrue(read.mightContainStb("stb1"));
+        assertTrue(read.mightContainStb("stb2"));
+        assertNull(SegmentStats.read("missingStats"));
+        // Cleanup
+        new File(FILENAME + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testBloomFilter() throws Exception {
+        // Setup
+        SegmentStats stats = new SegmentStats(1000);
+        // Call
+        for (int i = 0; i < 1000; i++) {
+            stats.add(new Record("stb" + i + "|title|provider|2014-04-01|1.00|1:30"));
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (stats.mightContainStb("stb" + i)) {
+                falsePositives++;
+            }
+        }
+        // Test
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(stats.mightContainStb("stb" + i));
+        }
+        assertTrue("false positives " + falsePositives, falsePositives < 300);
+    }
+
+    public void testFilterSkipsFile() throws Exception {
+        // Setup
+        SegmentStats stats = new SegmentStats(2);
+        stats.add(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        stats.add(new Record("stb2|unbreakable|buena vista|2014-04-03|6.00|2:05"));
+        // Test
+        assertTrue(RecordFilter.compile("DATE=2014-04-02").mayMatch(stats));
+        assertFalse(RecordFilter.compile("DATE>2014-04-03").mayMatch(stats));
+        assertFalse(RecordFilter.compile("REV=7..9").mayMatch(stats));
+        assertFalse(RecordFilter.compile("PROVIDER IN (hbo,fox)").mayMatch(stats));
+        assertTrue(RecordFilter.compile("PROVIDER=hbo OR REV<5").mayMatch(stats));
+        assertFalse(RecordFilter.compile("STB=stb9 AND REV>5").mayMatch(stats));
+        assertTrue(RecordFilter.compile("TITLE=anything").mayMatch(stats));
+    }
+
+    public void testExportAndUpdateWriteStats() throws Exception {
+        // Setup
+        Records records = new Records();
+        records.setMaxRecords(10);
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.exportToJson(FILENAME);
+        // Call
+        records.addRecord(new Record("stb1|the matrix|hbo|2014-04-01|9.00|1:30"));
+        records.exportToJson(FILENAME + "2");
+        SegmentStats stats = SegmentStats.read(FILENAME);
+        // Test
+        assertEquals(4.0, stats.getMinRev());
+        assertEquals(9.0, stats.getMaxRev());
+        assertTrue(stats.getProviders().contains("hbo"));
+        assertEquals(0, SegmentStats.read(FILENAME + "2").getCount());
+        // Cleanup
+        new File(FILENAME).delete();
+        new File(FILENAME + SegmentStats.SUFFIX).delete();
+        new File(FILENAME + "2").delete();
+        new File(FILENAME + "2" + SegmentStats.SUFFIX).delete();
+    }
+}
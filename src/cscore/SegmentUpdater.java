@@ -0,0 +1,100 @@
+package cscore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Overwrites records in an existing segment in place. Every slot is the same size so a record's slot is found
+ * directly from its index and only those bytes are rewritten. Strings that are not in the segment's dictionary yet
+ * are appended to the end of the file.
+ * Slots should be written in increasing order so the writes are sequential.
+ */
+public class SegmentUpdater implements Closeable {
+    private final FileChannel channel;
+    private final StringDictionary dictionary = new StringDictionary();
+    private final int dictionaryCount;
+    private final int count;
+    private ByteBuffer slots = ByteBuffer.allocate(64 * SegmentWriter.SLOT_SIZE);
+    private int[] indexes = new int[64];
+    private int pending = 0;
+
+    /**
+     * Opens a segment for updating
+     * @param filename the name of the segment file
+     * @throws IOException if the file cannot be opened or is not a segment
+     */
+    public SegmentUpdater(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SegmentWriter.HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != SegmentWriter.MAGIC) {
+            channel.close();
+            throw new IOException(filename + " is not a segment file");
+        }
+        count = header.getInt(SegmentWriter.ROW_COUNT_OFFSET);
+        dictionaryCount = header.getInt(SegmentWriter.DICTIONARY_COUNT_OFFSET);
+        long dictionaryOffset = header.getLong(SegmentWriter.DICTIONARY_OFFSET_OFFSET);
+
+        // load the existing strings so their ids are reused
+        ByteBuffer strings = ByteBuffer.allocate((int) (channel.size() - dictionaryOffset));
+        channel.read(strings, dictionaryOffset);
+        int position = 0;
+        for (int id = 0; id < dictionaryCount; id++) {
+            int length = strings.getInt(position);
+            dictionary.getId(new String(strings.array(), position + 4, length, StandardCharsets.UTF_8));
+            position += 4 + length;
+        }
+    }
+
+    /**
+     * Replaces the record in a slot. The write happens when the updater is closed.
+     * @param slot the slot to overwrite
+     * @param record the new data for the slot
+     */
+    public void write(int slot, Record record) {
+        if (slot < 0 || slot >= count) {
+            throw new IndexOutOfBoundsException("Slot " + slot + " is not in the segment");
+        }
+        if (pending == indexes.length) {
+            indexes = Arrays.copyOf(indexes, pending * 2);
+            ByteBuffer grown = ByteBuffer.allocate(slots.capacity() * 2);
+            slots.flip();
+            grown.put(slots);
+            slots = grown;
+        }
+        indexes[pending++] = slot;
+        SegmentWriter.writeSlot(slots, dictionary, record);
+    }
+
+    /**
+     * Appends any new strings, then overwrites the slots and closes the file. The strings are written first so a
+     * slot never references a string that isn't in the file.
+     * @throws IOException if the write fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (dictionary.size() > dictionaryCount) {
+            channel.position(channel.size());
+            SegmentWriter.writeStrings(channel, dictionary, dictionaryCount);
+            ByteBuffer newCount = ByteBuffer.allocate(4);
+            newCount.putInt(0, dictionary.size());
+            channel.write(newCount, SegmentWriter.DICTIONARY_COUNT_OFFSET);
+        }
+
+        for (int i = 0; i < pending; i++) {
+            ByteBuffer slot = ByteBuffer.wrap(slots.array(), i * SegmentWriter.SLOT_SIZE, SegmentWriter.SLOT_SIZE);
+            long offset = SegmentWriter.HEADER_SIZE + (long) indexes[i] * SegmentWriter.SLOT_SIZE;
+            int written = 0;
+            while (written < SegmentWriter.SLOT_SIZE) {
+                written += channel.write(slot, offset + written);
+            }
+        }
+        channel.close();
+    }
+}
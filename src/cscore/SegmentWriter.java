@@ -0,0 +1,134 @@
+package cscore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes records to a binary segment file. Segments are a compact alternative to the JSON export that can be read
+ * without a parser. The layout is:
+ * <pre>
+ * header      MAGIC, VERSION, SLOT_SIZE, row count, dictionary count, dictionary offset (HEADER_SIZE bytes)
+ * slots       one fixed width slot per row: STB id, TITLE id, PROVIDER id, epoch day, view minutes, REV
+ * dictionary  the strings referenced by the ids, each one a length followed by its UTF-8 bytes
+ * </pre>
+ * Rows are streamed to the file as they are added, only the dictionary is kept in memory until the segment is
+ * closed.
+ */
+public class SegmentWriter implements SlotWriter {
+    public static final int MAGIC = 0x43534547; // "CSEG"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int SLOT_SIZE = 26;
+    // header field offsets
+    static final int ROW_COUNT_OFFSET = 8;
+    static final int DICTIONARY_COUNT_OFFSET = 12;
+    static final int DICTIONARY_OFFSET_OFFSET = 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final StringDictionary dictionary = new StringDictionary();
+    private int count = 0;
+
+    /**
+     * Creates a new segment, replacing the file if it already exists
+     * @param filename the name of the segment file
+     * @throws IOException if the file cannot be created
+     */
+    public SegmentWriter(String filename) throws IOException {
+        channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Appends a record to the segment
+     * @param record the data to write
+     * @return the slot the record was written to
+     * @throws IOException if the write fails
+     */
+    @Override
+    public int add(Record record) throws IOException {
+        if (buffer.remaining() < SLOT_SIZE) {
+            flush();
+        }
+        writeSlot(buffer, dictionary, record);
+        return count++;
+    }
+
+    /**
+     * @return the number of records written so far
+     */
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the dictionary and the header and closes the file
+     * @throws IOException if the write fails
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        long dictionaryOffset = channel.position();
+        writeStrings(channel, dictionary, 0);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) SLOT_SIZE);
+        header.putInt(count);
+        header.putInt(dictionary.size());
+        header.putLong(dictionaryOffset);
+        header.rewind();
+        channel.write(header, 0);
+        channel.close();
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes a record into a slot, adding any new strings to the dictionary
+     */
+    static void writeSlot(ByteBuffer slot, StringDictionary dictionary, Record record) {
+        slot.putInt(dictionary.getId(record.getStb()));
+        slot.putInt(dictionary.getId(record.getTitle()));
+        slot.putInt(dictionary.getId(record.getProvider()));
+        slot.putInt(record.getEpochDay());
+        slot.putShort((short) record.getViewMinutes());
+        slot.putDouble(record.getRev());
+    }
+
+    /**
+     * Writes the dictionary strings starting at the given id to the channel's current position
+     */
+    static void writeStrings(FileChannel channel, StringDictionary dictionary, int from) throws IOException {
+        ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+        for (int id = from; id < dictionary.size(); id++) {
+            byte[] bytes = dictionary.getValue(id).getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < bytes.length + 4) {
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                out = ByteBuffer.allocate(Math.max(out.capacity(), bytes.length + 4));
+            }
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+    }
+}
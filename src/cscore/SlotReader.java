@@ -0,0 +1,43 @@
+package cscore;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of a binary export by slot, the slot being the index a record was written at
+ */
+public interface SlotReader extends Closeable {
+
+    /**
+     * @return the number of records in the file
+     */
+    int getCount();
+
+    /**
+     * @param slot the slot from 0 to <code>getCount() - 1</code>
+     * @return a new record with the slot's values
+     * @throws IOException if the record cannot be read
+     */
+    Record getRecord(int slot) throws IOException;
+
+    /**
+     * @param filename the name of the file to check
+     * @return true if the file is a segment or a compressed segment
+     */
+    static boolean canOpen(String filename) {
+        return SegmentReader.isSegment(filename) || CompressedSegmentReader.isCompressedSegment(filename);
+    }
+
+    /**
+     * Opens a segment or a compressed segment depending on what the file is
+     * @param filename the name of the file
+     * @return a reader for the file
+     * @throws IOException if the file cannot be read or is neither kind of segment
+     */
+    static SlotReader open(String filename) throws IOException {
+        if (CompressedSegmentReader.isCompressedSegment(filename)) {
+            return new CompressedSegmentReader(filename);
+        }
+        return new SegmentReader(filename);
+    }
+}
@@ -0,0 +1,23 @@
+package cscore;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes records to a binary export, each record to the next slot
+ */
+public interface SlotWriter extends Closeable {
+
+    /**
+     * Appends a record
+     * @param record the data to write
+     * @return the slot the record was written to
+     * @throws IOException if the write fails
+     */
+    int add(Record record) throws IOException;
+
+    /**
+     * @return the number of records written so far
+     */
+    int getCount();
+}
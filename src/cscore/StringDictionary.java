@@ -0,0 +1,51 @@
+package cscore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Assigns each distinct string an int id so it only has to be stored once. Ids start at 0 and are handed out in the
+ * order the strings are first seen.
+ */
+public class StringDictionary {
+    private HashMap<String, Integer> ids = new HashMap<>();
+    private ArrayList<String> values = new ArrayList<>();
+
+    /**
+     * @param value the string to look up
+     * @return the id of the string, adding it to the dictionary if it is new
+     */
+    public int getId(String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * @param value the string to look up
+     * @return the id of the string or -1 if it is not in the dictionary
+     */
+    public int findId(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id an id returned by <code>getId</code>
+     * @return the string with the given id
+     */
+    public String getValue(int id) {
+        return values.get(id);
+    }
+
+    /**
+     * @return the number of distinct strings
+     */
+    public int size() {
+        return values.size();
+    }
+}
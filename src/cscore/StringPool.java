@@ -0,0 +1,42 @@
+package cscore;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one canonical instance of each TITLE and PROVIDER value so records with the same values share their strings
+ * instead of each holding a copy. The pool is shared by every thread and is never emptied, so only fields with few
+ * distinct values belong in it. STBs are unbounded and would fill it, so they are not pooled. It stops taking new
+ * values once it holds <code>MAX_SIZE</code> of them, after that values it doesn't already hold are returned as they
+ * are.
+ */
+public class StringPool {
+    public static final int MAX_SIZE = 1 << 20;
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private StringPool() {
+    }
+
+    /**
+     * @param value the string to look up
+     * @return the canonical instance equal to the value or the value itself if it is new
+     * @throws NullPointerException if the value is null
+     */
+    public static String intern(String value) {
+        String canonical = POOL.get(value);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (POOL.size() >= MAX_SIZE) {
+            return value;
+        }
+        canonical = POOL.putIfAbsent(value, value);
+        return canonical == null ? value : canonical;
+    }
+
+    /**
+     * @return the number of canonical strings
+     */
+    public static int size() {
+        return POOL.size();
+    }
+}
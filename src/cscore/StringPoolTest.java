@@ -0,0 +1,80 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests for <code>StringPool</code>
+ */
+public class StringPoolTest extends TestCase {
+
+    public void testIntern() {
+        // Setup
+        String first = new String("pool provider");
+        String second = new String("pool provider");
+        // Call
+        String canonical = StringPool.intern(first);
+        // Test
+        assertSame(first, canonical);
+        assertSame(canonical, StringPool.intern(second));
+    }
+
+    public void testRecordsShareStrings() throws Exception {
+        // Call
+        Record parsed = new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30");
+        Record built = new Record(new String("stb2"), new String("the matrix"), new String("warner bros"),
+                "2014-04-02", 4.0, "1:30");
+        Record decoded = Record.fromFields(new String("stb3"), new String("the matrix"), new String("warner bros"),
+                16161, 90, 4.0);
+        // Test
+        assertSame(parsed.getTitle(), built.getTitle());
+        assertSame(parsed.getTitle(), decoded.getTitle());
+        assertSame(parsed.getProvider(), built.getProvider());
+        assertSame(parsed.getProvider(), decoded.getProvider());
+        assertNotSame(built.getStb(), Record.fromFields(new String("stb2"), "the matrix", "warner bros", 16161, 90,
+                4.0).getStb());
+    }
+
+    public void testStbsAreNotPooled() throws Exception {
+        // Setup
+        int size = StringPool.size();
+        // Call
+        Record first = new Record("pooled stb1|pooled title|pooled provider|2014-04-01|4.00|1:30");
+        Record second = RecordParser.get().parse("pooled stb2|pooled title|pooled provider|2014-04-01|4.00|1:30");
+        // Test
+        assertEquals(size + 2, StringPool.size());
+        assertSame(first.getTitle(), second.getTitle());
+    }
+
+    public void testConcurrentIntern() throws Exception {
+        // Setup
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Callable<String[]>> tasks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            tasks.add(() -> {
+                String[] values = new String[100];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = RecordParser.get().parse("stb" + i + "|concurrent title" + (i % 10)
+                            + "|provider|2014-04-01|1.00|1:30").getTitle();
+                }
+                return values;
+            });
+        }
+        // Call
+        List<Future<String[]>> results = pool.invokeAll(tasks);
+        pool.shutdown();
+        // Test
+        String[] first = results.get(0).get();
+        for (Future<String[]> result : results) {
+            String[] values = result.get();
+            for (int i = 0; i < values.length; i++) {
+                assertSame(first[i], values[i]);
+            }
+        }
+    }
+}
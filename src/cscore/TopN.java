@@ -0,0 +1,73 @@
+package cscore;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the first N records in sort order without sorting everything. The records are held in a heap with the
+ * worst kept record on top, so each new record costs at most log N and memory never grows past N records. Records
+ * that compare equal keep the order they were added in.
+ */
+public class TopN {
+    private final Comparator<Entry> order;
+    private final PriorityQueue<Entry> heap;
+    private final int limit;
+    private long added = 0;
+
+    /**
+     * A record and the order it was added in
+     */
+    private static class Entry {
+        final Record record;
+        final long sequence;
+
+        Entry(Record record, long sequence) {
+            this.record = record;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * @param comparator the order to sort by
+     * @param limit the number of records to keep
+     */
+    public TopN(Comparator<Record> comparator, int limit) {
+        this.limit = limit;
+        this.order = (a, b) -> {
+            int compare = comparator.compare(a.record, b.record);
+            return compare != 0 ? compare : Long.compare(a.sequence, b.sequence);
+        };
+        this.heap = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+    }
+
+    /**
+     * @param record the record to consider
+     */
+    public void add(Record record) {
+        Entry entry = new Entry(record, added++);
+        if (heap.size() < limit) {
+            heap.add(entry);
+        }
+        else if (limit > 0 && order.compare(entry, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    /**
+     * Passes the kept records to the sink in sorted order
+     * @param sink receives each record, returns false to stop
+     * @throws Exception if the sink fails
+     */
+    public void forEach(RecordSink sink) throws Exception {
+        List<Entry> sorted = new ArrayList<>(heap);
+        sorted.sort(order);
+        for (Entry entry : sorted) {
+            if (!sink.accept(entry.record)) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.util.ArrayList;
+
+/**
+ * Tests for <code>TopN</code>
+ */
+public class TopNTest extends TestCase {
+
+    public void testKeepsBest() throws Exception {
+        // Setup
+        TopN top = new TopN(new RecordComparator(new String[]{"REV"}), 3);
+        // Call
+        for (int i = 0; i < 100; i++) {
+            top.add(new Record("stb" + i + "|title|provider|2014-04-01|" + ((i * 37) % 100) + ".00|1:30"));
+        }
+        ArrayList<Record> kept = new ArrayList<>();
+        top.forEach(kept::add);
+        // Test
+        assertEquals(3, kept.size());
+        assertEquals(0.0, kept.get(0).getRev());
+        assertEquals(1.0, kept.get(1).getRev());
+        assertEquals(2.0, kept.get(2).getRev());
+    }
+
+    public void testTiesKeepFirst() throws Exception {
+        // Setup
+        TopN top = new TopN(new RecordComparator(new String[]{"REV"}), 2);
+        // Call
+        top.add(new Record("stb1|title|provider|2014-04-01|1.00|1:30"));
+        top.add(new Record("stb2|title|provider|2014-04-01|1.00|1:30"));
+        top.add(new Record("stb3|title|provider|2014-04-01|1.00|1:30"));
+        ArrayList<Record> kept = new ArrayList<>();
+        top.forEach(kept::add);
+        // Test
+        assertEquals("stb1", kept.get(0).getStb());
+        assertEquals("stb2", kept.get(1).getStb());
+    }
+
+    public void testKeepsBestDescending() throws Exception {
+        // Setup
+        TopN top = new TopN(new RecordComparator(new String[]{"REV:desc"}), 3);
+        // Call
+        for (int i = 0; i < 100; i++) {
+            top.add(new Record("stb" + i + "|title|provider|2014-04-01|" + ((i * 37) % 100) + ".00|1:30"));
+        }
+        ArrayList<Record> kept = new ArrayList<>();
+        top.forEach(kept::add);
+        // Test
+        assertEquals(3, kept.size());
+        assertEquals(99.0, kept.get(0).getRev());
+        assertEquals(98.0, kept.get(1).getRev());
+        assertEquals(97.0, kept.get(2).getRev());
+    }
+}
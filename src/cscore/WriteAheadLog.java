@@ -0,0 +1,219 @@
+package cscore;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Append only log of the records that have been added but not exported yet. Records are written in the same
+ * STB|TITLE|PROVIDER|DATE|REV|VIEW_TIME format as the import files, with '\\', '|' and line breaks in the text fields
+ * escaped so records imported from json can be logged too. Appends are buffered and committed in groups,
+ * either once <code>groupSize</code> records are waiting or every <code>groupMillis</code>, so a single fsync
+ * covers many records. Once the records have been exported the log is truncated.
+ */
+public class WriteAheadLog implements Closeable {
+    private final String filename;
+    private final FileChannel channel;
+    private final int groupSize;
+    private final ScheduledExecutorService committer;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+    private int pending = 0;
+
+    /**
+     * Opens the log with the default group commit of 4096 records or 50 milliseconds
+     * @param filename the name of the log file
+     * @throws IOException if the log cannot be opened
+     */
+    public WriteAheadLog(String filename) throws IOException {
+        this(filename, 4096, 50);
+    }
+
+    /**
+     * Opens the log, creating it if it doesn't exist. Existing entries are kept so they can be replayed.
+     * @param filename the name of the log file
+     * @param groupSize the number of records to wait for before committing
+     * @param groupMillis the longest time a record waits before it is committed
+     * @throws IOException if the log cannot be opened
+     */
+    public WriteAheadLog(String filename, int groupSize, long groupMillis) throws IOException {
+        this.filename = filename;
+        this.groupSize = groupSize;
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        committer.scheduleWithFixedDelay(() -> {
+            try {
+                commit();
+            }
+            catch (IOException e) {
+                System.out.println("Error: could not commit write ahead log '" + filename + "'");
+            }
+        }, groupMillis, groupMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the name of the log file
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Adds a record to the log. The record is durable once the group it is in has been committed.
+     * @param record the record to log
+     * @throws IOException if a commit fails
+     */
+    public synchronized void append(Record record) throws IOException {
+        String entry = escape(record.getStb()) + "|" + escape(record.getTitle()) + "|" + escape(record.getProvider())
+                + "|" + record.getDate() + "|" + record.getRev() + "|" + record.getViewTime() + "\n";
+        byte[] line = entry.getBytes(StandardCharsets.UTF_8);
+        buffer.write(line, 0, line.length);
+        pending++;
+        if (pending >= groupSize) {
+            commit();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the log and forces them to disk
+     * @throws IOException if the write fails
+     */
+    public synchronized void commit() throws IOException {
+        if (pending == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        buffer.reset();
+        pending = 0;
+    }
+
+    /**
+     * Discards everything in the log, called once the records in it are safely exported
+     * @throws IOException if the log cannot be truncated
+     */
+    public synchronized void truncate() throws IOException {
+        buffer.reset();
+        pending = 0;
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    /**
+     * Reads every record in the log in the order they were appended. A line cut off by a crash is skipped.
+     * @param consumer receives each record
+     * @throws IOException if the log cannot be read
+     */
+    public void replay(Consumer<Record> consumer) throws IOException {
+        RecordParser parser = RecordParser.get();
+        BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            try {
+                Record record = parser.parse(line);
+                if (line.indexOf('\\') >= 0) {
+                    record = Record.fromFields(unescape(record.getStb()), unescape(record.getTitle()),
+                            unescape(record.getProvider()), record.getEpochDay(), record.getViewMinutes(),
+                            record.getRev());
+                }
+                consumer.accept(record);
+            }
+            catch (Exception e) {
+                System.out.println("Error: Record could not be replayed '" + line + "'");
+            }
+        }
+        reader.close();
+    }
+
+    /**
+     * @return the value with '\\', '|', '\n' and '\r' replaced by escapes that don't break the line format
+     */
+    static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('|') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '|': escaped.append("\\p"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                default: escaped.append(c); break;
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * @return the value with the escapes added by <code>escape</code> turned back into the original characters
+     */
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 'p': unescaped.append('|'); break;
+                    case 'n': unescaped.append('\n'); break;
+                    case 'r': unescaped.append('\r'); break;
+                    default: unescaped.append(next); break;
+                }
+            }
+            else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Forces a file written outside the log to disk so the log can be truncated after it
+     * @param filename the file to sync
+     * @throws IOException if the file cannot be synced
+     */
+    public static void sync(String filename) throws IOException {
+        if (!new File(filename).exists()) {
+            return;
+        }
+        FileChannel file = FileChannel.open(Paths.get(filename), StandardOpenOption.WRITE);
+        file.force(true);
+        file.close();
+    }
+
+    /**
+     * Commits anything still buffered and closes the log
+     * @throws IOException if the commit fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        committer.shutdown();
+        commit();
+        channel.close();
+    }
+}
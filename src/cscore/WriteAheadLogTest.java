@@ -0,0 +1,91 @@
+package cscore;
+
+import junit.framework.TestCase;
+import java.io.File;
+
+/**
+ * Tests for <code>WriteAheadLog</code>
+ */
+public class WriteAheadLogTest extends TestCase {
+
+    public void testReplay() throws Exception {
+        // Setup
+        String filename = "TempLog";
+        new File(filename).delete();
+        Records records = new Records();
+        records.enableWriteAheadLog(filename);
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        records.addRecord(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|5.00|1:45"));
+        records.close();
+        // Call
+        Records restarted = new Records();
+        restarted.enableWriteAheadLog(filename);
+        // Test
+        assertEquals(2, restarted.getCount());
+        restarted.close();
+        // Cleanup
+        new File(filename).delete();
+    }
+
+    public void testReplayEscapedFields() throws Exception {
+        // Setup
+        String filename = "TempLog";
+        new File(filename).delete();
+        WriteAheadLog log = new WriteAheadLog(filename);
+        log.append(new Record("stb|1", "title\nwith\r\nbreaks", "back\\slash \\p", "2014-04-01", 4.0, "1:30"));
+        log.append(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        log.close();
+        java.util.ArrayList<Record> replayed = new java.util.ArrayList<>();
+        // Call
+        WriteAheadLog reopened = new WriteAheadLog(filename);
+        reopened.replay(replayed::add);
+        reopened.close();
+        // Test
+        assertEquals(2, replayed.size());
+        assertEquals("stb|1", replayed.get(0).getStb());
+        assertEquals("title\nwith\r\nbreaks", replayed.get(0).getTitle());
+        assertEquals("back\\slash \\p", replayed.get(0).getProvider());
+        assertEquals("2014-04-01", replayed.get(0).getDate());
+        assertEquals(4.0, replayed.get(0).getRev());
+        assertEquals("the hobbit", replayed.get(1).getTitle());
+        // Cleanup
+        new File(filename).delete();
+    }
+
+    public void testTruncateOnExport() throws Exception {
+        // Setup
+        String filename = "TempLog";
+        new File(filename).delete();
+        Records records = new Records();
+        records.enableWriteAheadLog(filename);
+        records.addRecord(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        // Call
+        records.exportToJson("TempLogExport");
+        records.close();
+        // Test
+        assertEquals(0, new File(filename).length());
+        // Cleanup
+        new File(filename).delete();
+        new File("TempLogExport").delete();
+        new File("TempLogExport" + SegmentStats.SUFFIX).delete();
+    }
+
+    public void testGroupCommit() throws Exception {
+        // Setup
+        String filename = "TempLog";
+        new File(filename).delete();
+        WriteAheadLog log = new WriteAheadLog(filename, 2, 60000);
+        // Call
+        log.append(new Record("stb1|the matrix|warner bros|2014-04-01|4.00|1:30"));
+        long afterOne = new File(filename).length();
+        log.append(new Record("stb2|the hobbit|warner bros|2014-04-02|8.00|2:45"));
+        long afterTwo = new File(filename).length();
+        log.close();
+        // Test
+        assertEquals(0, afterOne);
+        assertTrue(afterTwo > 0);
+        // Cleanup
+        new File(filename).delete();
+    }
+}